@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.service.ExportService;
+
+@Slf4j
+@RestController
+@RequestMapping("/export")
+@RequiredArgsConstructor
+public class ExportController {
+
+    private final ExportService exportService;
+
+    @GetMapping(value = "/films", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody exportFilms() {
+        log.info("Start exporting films");
+        return exportService::exportFilms;
+    }
+
+    @GetMapping(value = "/users", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody exportUsers() {
+        log.info("Start exporting users");
+        return exportService::exportUsers;
+    }
+
+    @GetMapping(value = "/likes", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody exportFilmLikes() {
+        log.info("Start exporting film likes");
+        return exportService::exportFilmLikes;
+    }
+
+    @GetMapping(value = "/friendships", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody exportFriendships() {
+        log.info("Start exporting friendships");
+        return exportService::exportFriendships;
+    }
+}
@@ -7,6 +7,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.dto.film.FilmDto;
+import ru.yandex.practicum.filmorate.dto.film.LikeBatchItemDto;
+import ru.yandex.practicum.filmorate.dto.film.LikeBatchResultDto;
 import ru.yandex.practicum.filmorate.dto.film.NewFilmDto;
 import ru.yandex.practicum.filmorate.dto.film.UpdateFilmDto;
 import ru.yandex.practicum.filmorate.service.FilmService;
@@ -22,9 +24,14 @@ public class FilmController {
     private final FilmService filmService;
 
     @GetMapping
-    public List<FilmDto> findAll() {
-        log.info("Start getting all films");
-        return filmService.getAllFilms();
+    public ResponseEntity<List<FilmDto>> findAll(@RequestParam(required = false) Integer after,
+                                                 @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Start getting all films");
+            return ResponseEntity.ok(filmService.getAllFilms());
+        }
+        log.info("Start getting films page after id {} with limit {}", after, limit);
+        return Pagination.toResponse(filmService.getFilmsPage(after, limit));
     }
 
     @GetMapping("/{id}")
@@ -47,6 +54,12 @@ public class FilmController {
         return filmService.getMostPopular(count);
     }
 
+    @GetMapping("/{id}/similar")
+    public List<FilmDto> getSimilar(@PathVariable int id, @RequestParam(defaultValue = "10") int count) {
+        log.info("Start getting {} films similar to film id {}", count, id);
+        return filmService.getSimilarFilms(id, count);
+    }
+
     @GetMapping("/director/{directorId}")
     public List<FilmDto> getFilmsByDirector(@PathVariable int directorId,
                                             @RequestParam(defaultValue = "year") String sortBy) {
@@ -89,6 +102,12 @@ public class FilmController {
         filmService.deleteLike(id, userId);
     }
 
+    @PostMapping("/likes:batch")
+    public List<LikeBatchResultDto> applyLikeBatch(@RequestBody List<LikeBatchItemDto> items) {
+        log.info("Start applying like batch of {} operations", items.size());
+        return filmService.applyLikeBatch(items);
+    }
+
     @DeleteMapping("/{filmId}")
     public ResponseEntity<Void> deleteFilm(@PathVariable int filmId) {
         boolean deleted = filmService.deleteFilmById(filmId);
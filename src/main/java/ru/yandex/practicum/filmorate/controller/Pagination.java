@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.dto.PageDto;
+
+import java.util.List;
+
+// Страница отдается массивом, как и полный список, а курсор следующей страницы - заголовком ответа
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class Pagination {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    static <T> ResponseEntity<List<T>> toResponse(PageDto<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+}
@@ -4,8 +4,10 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.dto.review.NewReviewDto;
+import ru.yandex.practicum.filmorate.dto.review.ReviewContentDto;
 import ru.yandex.practicum.filmorate.dto.review.ReviewDto;
 import ru.yandex.practicum.filmorate.dto.review.UpdateReviewDto;
 import ru.yandex.practicum.filmorate.service.ReviewService;
@@ -35,14 +37,26 @@ public class ReviewController {
         return reviewService.getReviewById(id);
     }
 
+    @GetMapping("/{id}/content")
+    public ReviewContentDto findReviewContent(@PathVariable int id) {
+        log.info("Start getting content of review with id = {}", id);
+        return reviewService.getReviewContent(id);
+    }
+
     @GetMapping
-    public List<ReviewDto> findReviewsByFilm(
+    public ResponseEntity<List<ReviewDto>> findReviewsByFilm(
             @RequestParam Optional<Integer> filmId,
-            @RequestParam(defaultValue = "10") int count
+            @RequestParam(defaultValue = "10") int count,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean summary
     ) {
-        log.info("Start getting reviews by film");
-
-        return reviewService.getReviewsByFilm(filmId, count);
+        if (cursor == null && limit == null) {
+            log.info("Start getting reviews by film");
+            return ResponseEntity.ok(reviewService.getReviewsByFilm(filmId, count, summary));
+        }
+        log.info("Start getting reviews page by film {} after cursor {} with limit {}", filmId, cursor, limit);
+        return Pagination.toResponse(reviewService.getReviewsPage(filmId, cursor, limit, summary));
     }
 
     @PutMapping
@@ -12,9 +12,11 @@ import ru.yandex.practicum.filmorate.dto.user.NewUserDto;
 import ru.yandex.practicum.filmorate.dto.user.UpdateUserDto;
 import ru.yandex.practicum.filmorate.dto.user.UserDto;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.TimelineService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.util.Collection;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -24,6 +26,7 @@ public class UserController {
 
     private final UserService userService;
     private final FilmService filmService;
+    private final TimelineService timelineService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -35,8 +38,13 @@ public class UserController {
     }
 
     @GetMapping
-    public Collection<UserDto> findAll() {
-        return userService.getAllUsers();
+    public ResponseEntity<List<UserDto>> findAll(@RequestParam(required = false) Integer after,
+                                                 @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(userService.getAllUsers());
+        }
+        log.info("Start getting users page after id {} with limit {}", after, limit);
+        return Pagination.toResponse(userService.getUsersPage(after, limit));
     }
 
     @GetMapping("/{id}")
@@ -76,6 +84,19 @@ public class UserController {
         return userService.getCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<UserDto> getFriendSuggestions(@PathVariable int id, @RequestParam(defaultValue = "10") int count) {
+        log.info("Start getting {} friend suggestions for user id = {}", count, id);
+        return userService.getFriendSuggestions(id, count);
+    }
+
+    @GetMapping("/{id}/path/{otherId}")
+    public List<UserDto> getFriendPath(@PathVariable int id, @PathVariable int otherId,
+                                       @RequestParam(defaultValue = "6") int maxDepth) {
+        log.info("Start searching friend path from user id = {} to user id = {} within depth {}", id, otherId, maxDepth);
+        return userService.getFriendPath(id, otherId, maxDepth);
+    }
+
     @DeleteMapping("/{userId}")
     public ResponseEntity<Void> deleteUser(@PathVariable int userId) {
         boolean deleted = userService.deleteUserById(userId);
@@ -84,9 +105,23 @@ public class UserController {
     }
 
     @GetMapping("/{id}/feed")
-    public Collection<FeedDto> getUserFeed(@PathVariable int id) {
-        log.info("Start getting user feed for user id = {}", id);
-        return userService.getUserFeed(id);
+    public ResponseEntity<List<FeedDto>> getUserFeed(@PathVariable int id,
+                                                     @RequestParam(required = false) Integer before,
+                                                     @RequestParam(required = false) Integer limit) {
+        if (before == null && limit == null) {
+            log.info("Start getting user feed for user id = {}", id);
+            return ResponseEntity.ok(userService.getUserFeed(id));
+        }
+        log.info("Start getting user feed page for user id = {} before event id {} with limit {}", id, before, limit);
+        return Pagination.toResponse(userService.getUserFeedPage(id, before, limit));
+    }
+
+    @GetMapping("/{id}/timeline")
+    public ResponseEntity<List<FeedDto>> getUserTimeline(@PathVariable int id,
+                                                         @RequestParam(required = false) Integer before,
+                                                         @RequestParam(required = false) Integer limit) {
+        log.info("Start getting friends timeline for user id = {} before event id {} with limit {}", id, before, limit);
+        return Pagination.toResponse(timelineService.getTimeline(id, before, limit));
     }
 
     @GetMapping("/{id}/recommendations")
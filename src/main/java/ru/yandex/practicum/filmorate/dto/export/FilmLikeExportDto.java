@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.dto.export;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class FilmLikeExportDto {
+    private int filmId;
+    private int userId;
+}
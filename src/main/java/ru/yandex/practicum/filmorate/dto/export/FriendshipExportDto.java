@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.dto.export;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class FriendshipExportDto {
+    private int userId;
+    private int friendId;
+    private String status;
+}
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.dto.film;
+
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+
+@Data
+public class LikeBatchItemDto {
+    private Integer filmId;
+    private Integer userId;
+    private LikeOperation op;
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.dto.film;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.LikeBatchStatus;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+
+@Data
+@AllArgsConstructor
+public class LikeBatchResultDto {
+    private int filmId;
+    private int userId;
+    private LikeOperation op;
+    private LikeBatchStatus status;
+}
@@ -2,12 +2,14 @@ package ru.yandex.practicum.filmorate.dto.review;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 @Data
 public class NewReviewDto {
     @NotNull(message = "Значение не должно быть пустым")
     @NotBlank(message = "Значение не должно быть пустым")
+    @Size(max = 10000, message = "Длина отзыва не должна превышать 10000 символов")
     private String content;
 
     @NotNull(message = "Значение не должно быть пустым")
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.dto.review;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ReviewContentDto {
+    private Integer reviewId;
+    private String content;
+}
@@ -1,10 +1,13 @@
 package ru.yandex.practicum.filmorate.dto.review;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 @Data
 public class ReviewDto {
     private Integer reviewId;
+    // в кратком виде отзыва текст не передается
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String content;
     private Boolean isPositive;
     private Integer userId;
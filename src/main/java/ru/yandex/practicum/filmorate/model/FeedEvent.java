@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class FeedEvent {
+    private int userId;
+    private int entityId;
+    private FeedEntityType eventType;
+    private FeedEventOperation operation;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.model;
+
+public enum LikeBatchStatus {
+    // лайк добавлен или удален
+    APPLIED,
+    // лайк уже был в нужном состоянии
+    UNCHANGED,
+    // в пакете есть более поздняя операция с тем же фильмом и пользователем
+    SUPERSEDED,
+    FILM_NOT_FOUND,
+    USER_NOT_FOUND
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class LikeEvent {
+    private int filmId;
+    private int userId;
+    private LikeOperation operation;
+    private LocalDateTime timestamp;
+}
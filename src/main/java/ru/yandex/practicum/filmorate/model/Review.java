@@ -23,18 +23,4 @@ public class Review {
     @NotNull(message = "Значение не должно быть пустым")
     private Integer filmId;
     private int useful = 0;
-
-    public void increaseUseful(boolean isReactionChanged) {
-        useful++;
-        if (isReactionChanged) {
-            useful++;
-        }
-    }
-
-    public void decreaseUseful(boolean isReactionChanged) {
-        useful--;
-        if (isReactionChanged) {
-            useful--;
-        }
-    }
 }
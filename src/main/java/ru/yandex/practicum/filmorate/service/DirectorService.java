@@ -8,6 +8,8 @@ import ru.yandex.practicum.filmorate.dto.director.UpdateDirectorDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.index.DirectorChangeListener;
 
 import java.util.List;
 
@@ -17,35 +19,45 @@ import java.util.List;
 public class DirectorService {
 
     private final DirectorStorage directorStorage;
+    private final ReferenceDataCache referenceDataCache;
+    private final List<DirectorChangeListener> directorChangeListeners;
 
     public List<Director> getAllDirectors() {
-        return directorStorage.getAllDirectors();
+        return referenceDataCache.getAllDirectors();
     }
 
     public Director getDirectorById(int id) {
-        return directorStorage.getDirectorById(id).orElseThrow(() ->
+        return referenceDataCache.getDirectorById(id).orElseThrow(() ->
                 new NotFoundException("Режиссёр с id:" + id + " не найден"));
     }
 
     public Director createDirector(NewDirectorDto newDirectorDto) {
         Director director = new Director();
         director.setName(newDirectorDto.getName());
-        return directorStorage.createDirector(director);
+        Director createdDirector = directorStorage.createDirector(director);
+        directorChangeListeners.forEach(listener -> listener.onDirectorCreated(createdDirector));
+        return createdDirector;
     }
 
     public Director updateDirector(UpdateDirectorDto updateDirectorDto) {
-        directorStorage.getDirectorById(updateDirectorDto.getId()).orElseThrow(() ->
+        referenceDataCache.getDirectorById(updateDirectorDto.getId()).orElseThrow(() ->
                 new NotFoundException("Режиссёр с id:" + updateDirectorDto.getId() + " не найден"));
 
         Director director = new Director();
         director.setId(updateDirectorDto.getId());
         director.setName(updateDirectorDto.getName());
-        return directorStorage.updateDirector(director);
+        Director updatedDirector = directorStorage.updateDirector(director);
+        directorChangeListeners.forEach(listener -> listener.onDirectorUpdated(updatedDirector));
+        return updatedDirector;
     }
 
     public boolean deleteDirector(int id) {
-        directorStorage.getDirectorById(id).orElseThrow(() ->
+        referenceDataCache.getDirectorById(id).orElseThrow(() ->
                 new NotFoundException("Режиссёр с id:" + id + " не найден"));
-        return directorStorage.deleteDirector(id);
+        boolean deleted = directorStorage.deleteDirector(id);
+        if (deleted) {
+            directorChangeListeners.forEach(listener -> listener.onDirectorDeleted(id));
+        }
+        return deleted;
     }
 }
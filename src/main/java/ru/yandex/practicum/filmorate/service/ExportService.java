@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.export.FilmLikeExportDto;
+import ru.yandex.practicum.filmorate.dto.export.FriendshipExportDto;
+import ru.yandex.practicum.filmorate.dto.film.FilmDto;
+import ru.yandex.practicum.filmorate.dto.user.UserDto;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.storage.StreamingStorage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+// Выгрузка в формате NDJSON: каждая запись пишется в поток отдельной строкой сразу после чтения из базы
+@Slf4j
+@Service
+public class ExportService {
+    private static final byte LINE_SEPARATOR = '\n';
+    private final StreamingStorage streamingStorage;
+    private final ObjectWriter writer;
+
+    public ExportService(StreamingStorage streamingStorage, ObjectMapper objectMapper) {
+        this.streamingStorage = streamingStorage;
+        // связи (лайки, дружбы) выгружаются отдельными потоками, пустые поля не пишутся
+        this.writer = objectMapper.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writer();
+    }
+
+    public void exportFilms(OutputStream out) {
+        streamingStorage.streamFilms(film -> {
+            FilmDto filmDto = FilmMapper.mapToFilmDto(film);
+            filmDto.setLikes(null);
+            writeLine(out, filmDto);
+        });
+        log.info("Films export finished");
+    }
+
+    public void exportUsers(OutputStream out) {
+        streamingStorage.streamUsers(user -> {
+            UserDto userDto = UserMapper.mapToUserDto(user);
+            userDto.setFriendsIds(null);
+            writeLine(out, userDto);
+        });
+        log.info("Users export finished");
+    }
+
+    public void exportFilmLikes(OutputStream out) {
+        streamingStorage.streamFilmLikes(like ->
+                writeLine(out, new FilmLikeExportDto(like.getFilmId(), like.getUserId())));
+        log.info("Film likes export finished");
+    }
+
+    public void exportFriendships(OutputStream out) {
+        streamingStorage.streamFriendships((userId, friendship) ->
+                writeLine(out, new FriendshipExportDto(userId, friendship.getFriendId(), friendship.getStatus())));
+        log.info("Friendships export finished");
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(writer.writeValueAsBytes(value));
+            out.write(LINE_SEPARATOR);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Ошибка сериализации записи выгрузки", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
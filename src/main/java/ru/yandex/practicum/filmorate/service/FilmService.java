@@ -4,17 +4,28 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dto.GenreRequestDto;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.director.DirectorRequestDto;
 import ru.yandex.practicum.filmorate.dto.film.FilmDto;
+import ru.yandex.practicum.filmorate.dto.film.LikeBatchItemDto;
+import ru.yandex.practicum.filmorate.dto.film.LikeBatchResultDto;
 import ru.yandex.practicum.filmorate.dto.film.NewFilmDto;
 import ru.yandex.practicum.filmorate.dto.film.UpdateFilmDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.*;
-import ru.yandex.practicum.filmorate.storage.DirectorStorage;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.cache.RequestIdentityMap;
+import ru.yandex.practicum.filmorate.storage.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmChangeListener;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.GenreYearPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.index.RecommendationEngine;
 
 import java.util.*;
 import java.util.function.Function;
@@ -25,12 +36,21 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class FilmService {
+    private static final int MAX_LIKE_BATCH_SIZE = 10_000;
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
-    private final DirectorStorage directorStorage;
+    private final ReferenceDataCache referenceDataCache;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final GenreYearPopularityIndex genreYearPopularityIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final RecommendationEngine recommendationEngine;
+    private final CoLikeIndex coLikeIndex;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final RequestIdentityMap requestIdentityMap;
+    private final List<FilmChangeListener> filmChangeListeners;
 
     public FilmDto createFilm(NewFilmDto newFilmDto) {
-        Mpa mpa = Optional.ofNullable(filmStorage.getRatingById(newFilmDto.getMpa().getId()))
+        Mpa mpa = Optional.ofNullable(referenceDataCache.getRatingById(newFilmDto.getMpa().getId()))
                 .orElseThrow(() -> {
                     log.info("Rating not exists. Error while creating film {}", newFilmDto);
                     return new NotFoundException("Рейтинг не существует id: " + newFilmDto.getMpa().getId());
@@ -50,7 +70,10 @@ public class FilmService {
         log.info("Creating film with {} directors and {} genres",
                 film.getDirectors().size(), film.getGenres().size());
 
-        return FilmMapper.mapToFilmDto(filmStorage.createFilm(film));
+        Film createdFilm = filmStorage.createFilm(film);
+        filmChangeListeners.forEach(listener -> listener.onFilmCreated(createdFilm));
+
+        return FilmMapper.mapToFilmDto(createdFilm);
     }
 
     public List<FilmDto> getAllFilms() {
@@ -63,8 +86,16 @@ public class FilmService {
                 .toList();
     }
 
+    public PageDto<FilmDto> getFilmsPage(Integer after, Integer limit) {
+        int pageSize = PageDto.checkLimit(limit);
+        List<FilmDto> films = filmStorage.getFilmsPage(after == null ? 0 : after, pageSize + 1).stream()
+                .map(FilmMapper::mapToFilmDto)
+                .toList();
+        return PageDto.of(films, pageSize, film -> String.valueOf(film.getId()));
+    }
+
     public FilmDto getFilmById(int id) {
-        return Optional.ofNullable(filmStorage.getFilmById(id))
+        return Optional.ofNullable(requestIdentityMap.getFilm(id))
                 .map(FilmMapper::mapToFilmDto)
                 .orElseThrow(() -> {
                     log.info("Error while getting film by id. Film not found id: {}", id);
@@ -78,25 +109,28 @@ public class FilmService {
             throw new ValidationException("Id должен быть указан");
         }
 
-        Film filmToUpdate = filmStorage.getFilmById(newFilm.getId());
+        Film filmToUpdate = requestIdentityMap.getFilm(newFilm.getId());
         if (filmToUpdate == null) {
             log.info("Film updating failed: film with id:{} not found", newFilm.getId());
             throw new NotFoundException("Фильм с id = " + newFilm.getId() + " не найден");
         }
 
         if (newFilm.getMpa().getId() != filmToUpdate.getMpa().getId()) {
-            filmToUpdate.setMpa(filmStorage.getRatingById(newFilm.getMpa().getId()));
+            filmToUpdate.setMpa(referenceDataCache.getRatingById(newFilm.getMpa().getId()));
         }
 
         FilmMapper.updateFilmFields(filmToUpdate, newFilm);
         filmToUpdate.setGenres(mapFilmGenres(newFilm.getGenres()));
         filmToUpdate.setDirectors(mapFilmDirectors(newFilm.getDirectors()));
 
-        return FilmMapper.mapToFilmDto(filmStorage.updateFilm(filmToUpdate));
+        Film updatedFilm = filmStorage.updateFilm(filmToUpdate);
+        filmChangeListeners.forEach(listener -> listener.onFilmUpdated(updatedFilm));
+
+        return FilmMapper.mapToFilmDto(updatedFilm);
     }
 
     public List<FilmDto> getFilmsByDirector(int directorId, String sortBy) {
-        directorStorage.getDirectorById(directorId)
+        referenceDataCache.getDirectorById(directorId)
                 .orElseThrow(() -> new NotFoundException("Режиссёр с id:" + directorId + " не найден"));
 
         if (!"year".equalsIgnoreCase(sortBy) && !"likes".equalsIgnoreCase(sortBy)) {
@@ -116,7 +150,7 @@ public class FilmService {
 
         List<Integer> directorIds = filmRequestDirectors.stream().map(DirectorRequestDto::getId).toList();
 
-        Map<Integer, Director> directorsFromDb = filmStorage.getDirectorsByIds(directorIds).stream()
+        Map<Integer, Director> directorsFromDb = referenceDataCache.getDirectorsByIds(directorIds).stream()
                 .collect(Collectors.toMap(Director::getId, Function.identity()));
 
         return filmRequestDirectors.stream()
@@ -128,67 +162,142 @@ public class FilmService {
     }
 
     public List<Genre> getAllGenres() {
-        return filmStorage.getAllGenres();
+        return referenceDataCache.getAllGenres();
     }
 
     public Genre getGenreById(int id) {
-        return Optional.ofNullable(filmStorage.getGenreById(id)).orElseThrow(() -> {
+        return Optional.ofNullable(referenceDataCache.getGenreById(id)).orElseThrow(() -> {
             log.info("Error while getting genre by id. Genre not found id: {}", id);
             return new NotFoundException("Жанр не найден id = " + id);
         });
     }
 
     public List<Mpa> getMpaList() {
-        return filmStorage.getRatings();
+        return referenceDataCache.getRatings();
     }
 
     public Mpa getMpaById(int id) {
-        return Optional.ofNullable(filmStorage.getRatingById(id)).orElseThrow(() -> {
+        return Optional.ofNullable(referenceDataCache.getRatingById(id)).orElseThrow(() -> {
             log.info("Error while getting mpa by id. Mpa not found id: {}", id);
             return new NotFoundException("Рейтинг не найден id = " + id);
         });
     }
 
     public void addLike(int filmId, int userId) {
-        Film film = filmStorage.getFilmById(filmId);
-        if (film == null) {
+        if (!requestIdentityMap.existsFilm(filmId)) {
             log.info("Error while adding like. Film not found id: {}", filmId);
             throw new NotFoundException("Ошибка добавления лайка к фильму. Фильм не найден");
         }
 
-        User user = userStorage.getUserById(userId);
-        if (user == null) {
+        if (!requestIdentityMap.existsUser(userId)) {
             log.info("Error while adding like. User not found id: {}", userId);
             throw new NotFoundException("Ошибка добавления лайка к фильму. Пользователь не найден");
         }
 
-        filmStorage.addLike(filmId, userId);
+        boolean added = likeWriteBuffer.isEnabled()
+                ? likeWriteBuffer.submit(filmId, userId, LikeOperation.ADD)
+                : filmStorage.addLike(filmId, userId);
+        if (added) {
+            filmChangeListeners.forEach(listener -> listener.onLikeAdded(filmId, userId));
+        }
     }
 
     public void deleteLike(int filmId, int userId) {
-        Film film = filmStorage.getFilmById(filmId);
-        if (film == null) {
+        if (!requestIdentityMap.existsFilm(filmId)) {
             log.info("Error while deleting like. Film not found id: {}", filmId);
             throw new NotFoundException("Ошибка удаления лайка к фильму. Фильм не найден");
         }
 
-        List<Integer> likes = filmStorage.getFilmLikes(filmId);
-        if (likes == null || likes.isEmpty() || !likes.contains(userId)) {
+        // лайк несуществующего пользователя не может существовать, отдельная проверка пользователя не нужна
+        boolean deleted = likeWriteBuffer.isEnabled()
+                ? likeWriteBuffer.submit(filmId, userId, LikeOperation.REMOVE)
+                : filmStorage.deleteLike(filmId, userId);
+        if (!deleted) {
             log.info("Error while deleting like. Like not found.");
             throw new NotFoundException("Ошибка удаления лайка к фильму. Лайк не найден");
         }
+        filmChangeListeners.forEach(listener -> listener.onLikeRemoved(filmId, userId));
+    }
+
+    public List<LikeBatchResultDto> applyLikeBatch(List<LikeBatchItemDto> items) {
+        if (items == null || items.isEmpty()) {
+            throw new ValidationException("Пакет лайков не должен быть пустым");
+        }
+        if (items.size() > MAX_LIKE_BATCH_SIZE) {
+            throw new ValidationException("Пакет лайков не должен превышать " + MAX_LIKE_BATCH_SIZE + " операций");
+        }
+        for (int i = 0; i < items.size(); i++) {
+            LikeBatchItemDto item = items.get(i);
+            if (item == null || item.getFilmId() == null || item.getUserId() == null || item.getOp() == null) {
+                throw new ValidationException("В операции №" + (i + 1) + " должны быть указаны filmId, userId и op");
+            }
+        }
+
+        if (likeWriteBuffer.isEnabled()) {
+            // пакет применяется к базе напрямую, поэтому отложенные операции должны быть записаны раньше него
+            likeWriteBuffer.flush();
+        }
 
-        User user = userStorage.getUserById(userId);
-        if (user == null) {
-            log.info("Error while deleting like. User not found id: {}", userId);
-            throw new NotFoundException("Ошибка удаления лайка к фильму. Пользователь не найден");
+        Set<Integer> existingFilmIds = filmStorage.getExistingFilmIds(items.stream()
+                .map(LikeBatchItemDto::getFilmId)
+                .collect(Collectors.toSet()));
+        Set<Integer> existingUserIds = userStorage.getExistingUserIds(items.stream()
+                .map(LikeBatchItemDto::getUserId)
+                .collect(Collectors.toSet()));
+
+        // по каждой паре фильм-пользователь применяется только последняя операция пакета
+        Map<FilmLike, Integer> lastOperations = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            lastOperations.put(new FilmLike(items.get(i).getFilmId(), items.get(i).getUserId()), i);
         }
 
-        filmStorage.deleteLike(filmId, userId);
+        LikeBatchStatus[] statuses = new LikeBatchStatus[items.size()];
+        List<FilmLike> likesToAdd = new ArrayList<>();
+        List<FilmLike> likesToDelete = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            LikeBatchItemDto item = items.get(i);
+            FilmLike like = new FilmLike(item.getFilmId(), item.getUserId());
+            if (!existingFilmIds.contains(item.getFilmId())) {
+                statuses[i] = LikeBatchStatus.FILM_NOT_FOUND;
+            } else if (!existingUserIds.contains(item.getUserId())) {
+                statuses[i] = LikeBatchStatus.USER_NOT_FOUND;
+            } else if (lastOperations.get(like) != i) {
+                statuses[i] = LikeBatchStatus.SUPERSEDED;
+            } else if (item.getOp() == LikeOperation.ADD) {
+                likesToAdd.add(like);
+            } else {
+                likesToDelete.add(like);
+            }
+        }
+
+        Set<FilmLike> applied = filmStorage.applyLikes(likesToAdd, likesToDelete);
+        log.info("Like batch applied: {} of {} operations changed likes", applied.size(), items.size());
+
+        List<LikeBatchResultDto> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            LikeBatchItemDto item = items.get(i);
+            if (statuses[i] == null) {
+                boolean changed = applied.contains(new FilmLike(item.getFilmId(), item.getUserId()));
+                statuses[i] = changed ? LikeBatchStatus.APPLIED : LikeBatchStatus.UNCHANGED;
+                if (changed) {
+                    notifyLikeChanged(item.getFilmId(), item.getUserId(), item.getOp());
+                }
+            }
+            results.add(new LikeBatchResultDto(item.getFilmId(), item.getUserId(), item.getOp(), statuses[i]));
+        }
+        return results;
+    }
+
+    private void notifyLikeChanged(int filmId, int userId, LikeOperation operation) {
+        if (operation == LikeOperation.ADD) {
+            filmChangeListeners.forEach(listener -> listener.onLikeAdded(filmId, userId));
+        } else {
+            filmChangeListeners.forEach(listener -> listener.onLikeRemoved(filmId, userId));
+        }
     }
 
     public List<FilmDto> getMostPopular(int count) {
-        List<Film> films = filmStorage.getMostPopular(count);
+        List<Film> films = filmStorage.getFilmsByIds(popularityLeaderboard.getTop(count));
         if (films.isEmpty()) {
             return Collections.emptyList();
         }
@@ -197,6 +306,17 @@ public class FilmService {
                 .toList();
     }
 
+    public List<FilmDto> getSimilarFilms(int filmId, int count) {
+        if (!filmStorage.existsFilmById(filmId)) {
+            log.info("Error while getting similar films. Film not found id: {}", filmId);
+            throw new NotFoundException("Фильм с id:" + filmId + " не найден");
+        }
+
+        return filmStorage.getFilmsByIds(coLikeIndex.getSimilar(filmId, count)).stream()
+                .map(FilmMapper::mapToFilmDto)
+                .toList();
+    }
+
     public List<FilmDto> searchFilms(String query, String by) {
         String[] searchBy = by.split(",");
         boolean searchByTitle = false;
@@ -212,7 +332,11 @@ public class FilmService {
         if (!searchByTitle && !searchByDirector) {
             throw new ValidationException("Параметр 'by' должен содержать 'title' и/или 'director'");
         }
-        List<Film> films = filmStorage.searchFilms(query, searchByTitle, searchByDirector);
+        List<Integer> filmIds = filmSearchIndex.search(query, searchByTitle, searchByDirector).stream()
+                .sorted(Comparator.<Integer>comparingInt(popularityLeaderboard::getLikesCount).reversed()
+                        .thenComparing(Comparator.naturalOrder()))
+                .toList();
+        List<Film> films = filmStorage.getFilmsByIds(filmIds);
         return films.stream()
                 .map(FilmMapper::mapToFilmDto)
                 .toList();
@@ -225,7 +349,7 @@ public class FilmService {
 
         List<Integer> genreIds = filmRequestGenres.stream().map(GenreRequestDto::getId).toList();
 
-        Map<Integer, Genre> genresFromDb = filmStorage.getGenresByIds(genreIds).stream()
+        Map<Integer, Genre> genresFromDb = referenceDataCache.getGenresByIds(genreIds).stream()
                 .collect(Collectors.toMap(Genre::getId, Function.identity()));
 
         return filmRequestGenres.stream()
@@ -242,11 +366,18 @@ public class FilmService {
         if (!deleted) {
             throw new NotFoundException("Фильм с id=" + filmId + " не найден");
         }
+        // лайки удаленного фильма записать уже нельзя; получатели изменений сбрасывают фильм целиком
+        likeWriteBuffer.purge(like -> like.getFilmId() == filmId);
+        filmChangeListeners.forEach(listener -> listener.onFilmDeleted(filmId));
         return true;
     }
 
     public List<FilmDto> getPopularFilmsByGenreAndYear(Integer count, Integer genreId, Integer year) {
-        List<Film> films = filmStorage.getPopularFilmsByGenreAndYear(count, genreId, year);
+        int limit = (count != null && count > 0) ? count : 10;
+        List<Integer> filmIds = (genreId == null && year == null)
+                ? popularityLeaderboard.getTop(limit)
+                : genreYearPopularityIndex.getTop(limit, genreId, year);
+        List<Film> films = filmStorage.getFilmsByIds(filmIds);
         if (films.isEmpty()) {
             return Collections.emptyList();
         }
@@ -256,14 +387,12 @@ public class FilmService {
     }
 
     public List<FilmDto> getCommonFilms(int userId, int friendId) {
-        User user = userStorage.getUserById(userId);
-        if (user == null) {
+        if (!requestIdentityMap.existsUser(userId)) {
             log.info("Error while getting common films. User not found id: {}", userId);
             throw new NotFoundException("Пользователь с id:" + userId + " не найден");
         }
 
-        User friend = userStorage.getUserById(friendId);
-        if (friend == null) {
+        if (!requestIdentityMap.existsUser(friendId)) {
             log.info("Error while getting common films. Friend not found id: {}", friendId);
             throw new NotFoundException("Пользователь с id:" + friendId + " не найден");
         }
@@ -279,7 +408,7 @@ public class FilmService {
     }
 
     public List<FilmDto> getRecommended(int userId) {
-        List<Film> films = filmStorage.getRecommended(userId);
+        List<Film> films = filmStorage.getFilmsByIds(recommendationEngine.recommend(userId));
         if (films.isEmpty()) {
             return Collections.emptyList();
         }
@@ -3,7 +3,9 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.review.NewReviewDto;
+import ru.yandex.practicum.filmorate.dto.review.ReviewContentDto;
 import ru.yandex.practicum.filmorate.dto.review.ReviewDto;
 import ru.yandex.practicum.filmorate.dto.review.UpdateReviewDto;
 import ru.yandex.practicum.filmorate.exception.ConditionsNotMetException;
@@ -14,11 +16,17 @@ import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.model.ReviewReaction;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.cache.TopReviewsCache;
 
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 @Slf4j
@@ -27,10 +35,12 @@ import java.util.Optional;
 public class ReviewService {
     private final ReviewStorage reviewStorage;
     private final UserStorage userStorage;
+    private final TopReviewsCache topReviewsCache;
 
     public ReviewDto createReview(NewReviewDto dto) {
-        Review review = ReviewMapper.mapToReview(dto);
-        return ReviewMapper.mapToReviewDto(reviewStorage.createReview(review));
+        Review review = reviewStorage.createReview(ReviewMapper.mapToReview(dto));
+        topReviewsCache.onReviewCreated(review);
+        return ReviewMapper.mapToReviewDto(review);
     }
 
     public ReviewDto getReviewById(int id) {
@@ -42,21 +52,82 @@ public class ReviewService {
                 });
     }
 
-    public List<ReviewDto> getReviewsByFilm(Optional<Integer> filmId, int count) {
+    public ReviewContentDto getReviewContent(int id) {
+        return reviewStorage.getReviewContent(id)
+                .map(content -> new ReviewContentDto(id, content))
+                .orElseThrow(() -> {
+                    log.info("Error while getting review content. Review not found id: {}", id);
+                    return new NotFoundException("Отзыв с id:" + id + " не найден");
+                });
+    }
+
+    // Отзывы упорядочены по убыванию полезности, при равенстве - по возрастанию id.
+    // В кратком виде текст отзывов не читается и загружается отдельно по каждому отзыву
+    public List<ReviewDto> getReviewsByFilm(Optional<Integer> filmId, int count, boolean summary) {
         List<Review> reviews;
-        if (filmId.isPresent()) {
-            reviews = reviewStorage.getReviewsByFilm(filmId.get(), count);
+        if (filmId.isEmpty()) {
+            reviews = reviewStorage.getAllReviews(count, !summary);
+        } else if (topReviewsCache.isEnabled() && count <= topReviewsCache.getDepth()) {
+            reviews = getTopReviews(filmId.get(), count, !summary);
         } else {
-            reviews = reviewStorage.getAllReviews(count);
-        }
-
-        if (reviews.isEmpty()) {
-            return Collections.emptyList();
+            reviews = reviewStorage.getReviewsByFilm(filmId.get(), count, !summary);
         }
 
         return reviews.stream()
                 .map(ReviewMapper::mapToReviewDto)
-                .sorted(Comparator.comparing(ReviewDto::getUseful).reversed())
+                .toList();
+    }
+
+    public PageDto<ReviewDto> getReviewsPage(Optional<Integer> filmId, String cursor, Integer limit, boolean summary) {
+        int pageSize = PageDto.checkLimit(limit);
+        // курсор - позиция последнего отзыва предыдущей страницы; первая страница начинается до всех отзывов
+        int[] after = cursor == null ? new int[]{Integer.MAX_VALUE, 0} : decodeCursor(cursor);
+        List<ReviewDto> reviews = reviewStorage.getReviewsPage(filmId.orElse(null), after[0], after[1], pageSize + 1,
+                        !summary)
+                .stream()
+                .map(ReviewMapper::mapToReviewDto)
+                .toList();
+        return PageDto.of(reviews, pageSize, ReviewService::encodeCursor);
+    }
+
+    private static String encodeCursor(ReviewDto review) {
+        String position = review.getUseful() + ":" + review.getReviewId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (position.length != 2) {
+                throw new IllegalArgumentException("Unexpected cursor format");
+            }
+            return new int[]{Integer.parseInt(position[0]), Integer.parseInt(position[1])};
+        } catch (IllegalArgumentException e) {
+            log.info("Error while getting reviews page. Invalid cursor: {}", cursor);
+            throw new ValidationException("Некорректный курсор страницы отзывов");
+        }
+    }
+
+    private List<Review> getTopReviews(int filmId, int count, boolean withContent) {
+        List<Integer> reviewIds = topReviewsCache.getTop(filmId, count);
+        if (reviewIds == null) {
+            int depth = topReviewsCache.getDepth();
+            long stamp = topReviewsCache.stamp(filmId);
+            // для заполнения кэша тексты не нужны, они читаются только для возвращаемых отзывов
+            List<Review> reviews = reviewStorage.getReviewsByFilm(filmId, depth + 1, false);
+            topReviewsCache.put(filmId, reviews, reviews.size() <= depth, stamp);
+            List<Review> page = reviews.subList(0, Math.min(count, reviews.size()));
+            if (!withContent || page.isEmpty()) {
+                return page;
+            }
+            reviewIds = page.stream().map(Review::getId).toList();
+        }
+
+        // отзывы читаются из базы без сохранения порядка, поэтому порядок кэша восстанавливается
+        Map<Integer, Integer> positions = IntStream.range(0, reviewIds.size()).boxed()
+                .collect(Collectors.toMap(reviewIds::get, Function.identity()));
+        return reviewStorage.getReviewsByIds(reviewIds, withContent).stream()
+                .sorted(Comparator.comparingInt(review -> positions.get(review.getId())))
                 .toList();
     }
 
@@ -82,76 +153,56 @@ public class ReviewService {
             return new NotFoundException("Отзыв с id = " + reviewId + " не найден");
         });
 
-        return reviewStorage.deleteReview(review);
+        boolean deleted = reviewStorage.deleteReview(review);
+        if (deleted) {
+            topReviewsCache.onReviewDeleted(review.getFilmId(), reviewId);
+        }
+        return deleted;
     }
 
     //добавление лайка/дизлайка к отзыву
     public ReviewDto addReactionToReview(int reviewId, int userId, boolean isPositiveReaction) {
-        Review review = reviewStorage.getReviewById(reviewId).orElseThrow(() -> {
-            log.info("Error while managing review reaction: review with id = {} not found", reviewId);
-            return new NotFoundException("Отзыв с id = " + reviewId + " не найден");
-        });
-
-        Optional.ofNullable(userStorage.getUserById(userId)).orElseThrow(() -> {
-            log.info("Error while adding like: user with id = {} not found", userId);
-            return new NotFoundException("Ошибка изменения реакции к отзыву. Пользователь не найден");
-        });
-
-        //Производится поиск действующей реакции на отзыв(лайк/дизлайк). Если не найдена, добавляется новая.
-        //Если реакции отличаются, происходит замена
-        Optional<ReviewReaction> reactionOpt = reviewStorage.getReviewReaction(reviewId, userId);
-
-        if (reactionOpt.isEmpty()) {
-            if (isPositiveReaction) {
-                review.increaseUseful(false);
-            } else {
-                review.decreaseUseful(false);
-            }
-        } else {
-            if (reactionOpt.get().isPositive() == isPositiveReaction) {
-                throw new ConditionsNotMetException("Отзыв уже имеет реакцию от пользователя");
-            }
-
-            if (isPositiveReaction) {
-                review.increaseUseful(true);
-            } else {
-                review.decreaseUseful(true);
-            }
-        }
-        reviewStorage.addReviewReaction(reviewId, userId, isPositiveReaction, review.getUseful());
-        return ReviewMapper.mapToReviewDto(review);
+        //Реакция добавляется или меняется на противоположную вместе со сдвигом полезности в одной транзакции.
+        //Причина отказа выясняется, только если реакция не изменилась
+        long reviewStamp = topReviewsCache.reviewStamp(reviewId);
+        return reviewStorage.addReviewReaction(reviewId, userId, isPositiveReaction)
+                .map(review -> onUsefulChanged(review, reviewStamp))
+                .orElseThrow(() -> {
+                    checkReviewAndUser(reviewId, userId);
+                    return new ConditionsNotMetException("Отзыв уже имеет реакцию от пользователя");
+                });
     }
 
     // удаление лайка/дизлайка к отзыву
     public ReviewDto deleteReactionFromReview(int reviewId, int userId, boolean isPositiveReaction) {
-        Review review = reviewStorage.getReviewById(reviewId).orElseThrow(() -> {
-            log.info("Error while managing review reaction: review with id = {} not found", reviewId);
-            return new NotFoundException("Отзыв с id = " + reviewId + " не найден");
-        });
-
-        Optional.ofNullable(userStorage.getUserById(userId)).orElseThrow(() -> {
-            log.info("Error while managing review reaction: user with id = {} not found", userId);
-            return new NotFoundException("Ошибка изменения реакции к отзыву. Пользователь не найден");
-        });
-
-        ReviewReaction currentReaction = reviewStorage.getReviewReaction(reviewId, userId).orElseThrow(() -> {
-            log.info("Error while managing review reaction: review {} of user {} not found", reviewId, userId);
-            return new NotFoundException("Ошибка изменения реакции к отзыву. Реакция не найдена");
-        });
+        long reviewStamp = topReviewsCache.reviewStamp(reviewId);
+        return reviewStorage.deleteReviewReaction(reviewId, userId, isPositiveReaction)
+                .map(review -> onUsefulChanged(review, reviewStamp))
+                .orElseThrow(() -> {
+                    checkReviewAndUser(reviewId, userId);
+                    ReviewReaction currentReaction = reviewStorage.getReviewReaction(reviewId, userId).orElseThrow(() -> {
+                        log.info("Error while managing review reaction: review {} of user {} not found", reviewId, userId);
+                        return new NotFoundException("Ошибка изменения реакции к отзыву. Реакция не найдена");
+                    });
+                    log.info("Error while managing review reaction: reaction of user {} to review {} is {}",
+                            userId, reviewId, currentReaction.isPositive() ? "like" : "dislike");
+                    return new ConditionsNotMetException("Отзыв не имеет такой реакции от пользователя");
+                });
+    }
 
+    private ReviewDto onUsefulChanged(Review review, long reviewStamp) {
+        topReviewsCache.onUsefulChanged(review.getFilmId(), review.getId(), review.getUseful(), reviewStamp);
+        return ReviewMapper.mapToReviewDto(review);
+    }
 
-        if (currentReaction.isPositive() != isPositiveReaction) {
-            throw new ConditionsNotMetException("Отзыв не имеет такой реакции от пользователя");
+    private void checkReviewAndUser(int reviewId, int userId) {
+        if (reviewStorage.getReviewById(reviewId).isEmpty()) {
+            log.info("Error while managing review reaction: review with id = {} not found", reviewId);
+            throw new NotFoundException("Отзыв с id = " + reviewId + " не найден");
         }
-
-        if (isPositiveReaction) {
-            review.decreaseUseful(false);
-        } else {
-            review.increaseUseful(false);
+        if (!userStorage.existsUserById(userId)) {
+            log.info("Error while managing review reaction: user with id = {} not found", userId);
+            throw new NotFoundException("Ошибка изменения реакции к отзыву. Пользователь не найден");
         }
-
-        reviewStorage.deleteReviewReaction(reviewId, userId, review.getUseful());
-        return ReviewMapper.mapToReviewDto(review);
     }
-
 }
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.PageDto;
+import ru.yandex.practicum.filmorate.dto.user.FeedDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.cache.RequestIdentityMap;
+import ru.yandex.practicum.filmorate.storage.cache.TimelineCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Лента событий друзей пользователя от новых к старым.
+ * Собирается при чтении слиянием уже упорядоченных лент друзей через кучу: сначала одним запросом
+ * определяется последнее событие каждого друга, затем лента друга читается страницами только тогда,
+ * когда ее событие оказывается на вершине кучи. Слияние останавливается, как только набрана страница,
+ * поэтому при тысячах друзей читаются ленты не более чем стольких друзей, сколько событий на странице.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TimelineService {
+    private final UserStorage userStorage;
+    private final TimelineCache timelineCache;
+    private final RequestIdentityMap requestIdentityMap;
+
+    public PageDto<FeedDto> getTimeline(int userId, Integer before, Integer limit) {
+        if (!requestIdentityMap.existsUser(userId)) {
+            throw new NotFoundException("Ошибка получения ленты друзей. Пользователь с id = " + userId + " не найден");
+        }
+        int pageSize = PageDto.checkLimit(limit);
+        int beforeEventId = before == null ? Integer.MAX_VALUE : before;
+
+        List<FeedDto> events = timelineCache.isEnabled()
+                ? getCachedEvents(userId, beforeEventId, pageSize + 1)
+                : merge(userId, beforeEventId, pageSize + 1);
+        return PageDto.of(events, pageSize, event -> String.valueOf(event.getEventId()));
+    }
+
+    public void evict(int userId) {
+        timelineCache.evict(userId);
+    }
+
+    private List<FeedDto> getCachedEvents(int userId, int beforeEventId, int count) {
+        List<FeedDto> cached = timelineCache.getPage(userId, beforeEventId, count);
+        if (cached != null) {
+            return cached;
+        }
+        int depth = Math.max(timelineCache.getDepth(), count);
+        List<FeedDto> head = merge(userId, Integer.MAX_VALUE, depth + 1);
+        boolean complete = head.size() <= depth;
+        timelineCache.put(userId, complete ? head : head.subList(0, depth), complete);
+
+        cached = timelineCache.getPage(userId, beforeEventId, count);
+        // страница глубже собранной части ленты
+        return cached != null ? cached : merge(userId, beforeEventId, count);
+    }
+
+    private List<FeedDto> merge(int userId, int beforeEventId, int count) {
+        List<Integer> friendIds = userStorage.getFriendIds(userId);
+        if (friendIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        PriorityQueue<FeedStream> heap = new PriorityQueue<>(
+                Comparator.comparingInt(FeedStream::peekEventId).reversed());
+        for (Map.Entry<Integer, Integer> latest : userStorage.getLatestFeedEventIds(friendIds, beforeEventId).entrySet()) {
+            heap.add(new FeedStream(latest.getKey(), latest.getValue()));
+        }
+
+        List<FeedDto> events = new ArrayList<>(count);
+        while (events.size() < count && !heap.isEmpty()) {
+            FeedStream stream = heap.poll();
+            int remaining = count - events.size();
+            if (!stream.isLoaded()) {
+                // до чтения позиция ленты известна только по последнему событию;
+                // после чтения она может сдвинуться к более старому событию, поэтому лента возвращается в кучу
+                if (stream.load(userStorage, remaining)) {
+                    heap.add(stream);
+                }
+                continue;
+            }
+            events.add(stream.next());
+            if (stream.hasNext() || stream.load(userStorage, remaining - 1)) {
+                heap.add(stream);
+            }
+        }
+        return events;
+    }
+
+    // Лента одного друга, читаемая страницами от новых событий к старым
+    private static class FeedStream {
+        private final int userId;
+        // id, меньше которого должны быть события следующей страницы
+        private int nextBefore;
+        private List<FeedDto> page;
+        private int position;
+
+        FeedStream(int userId, int latestEventId) {
+            this.userId = userId;
+            this.nextBefore = latestEventId + 1;
+        }
+
+        int peekEventId() {
+            return page == null ? nextBefore - 1 : page.get(position).getEventId();
+        }
+
+        boolean isLoaded() {
+            return page != null;
+        }
+
+        boolean hasNext() {
+            return page != null && position < page.size();
+        }
+
+        FeedDto next() {
+            FeedDto event = page.get(position++);
+            nextBefore = event.getEventId();
+            return event;
+        }
+
+        // Читает следующую страницу; возвращает false, если событий больше нет или они не нужны
+        boolean load(UserStorage userStorage, int count) {
+            if (count <= 0) {
+                return false;
+            }
+            page = userStorage.getUserFeedPage(userId, nextBefore, count);
+            position = 0;
+            return !page.isEmpty();
+        }
+    }
+}
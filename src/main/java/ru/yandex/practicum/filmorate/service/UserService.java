@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.user.FeedDto;
 import ru.yandex.practicum.filmorate.dto.user.NewUserDto;
 import ru.yandex.practicum.filmorate.dto.user.UpdateUserDto;
@@ -13,24 +14,52 @@ import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
 import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.cache.FriendSuggestionCache;
+import ru.yandex.practicum.filmorate.storage.cache.RequestIdentityMap;
+import ru.yandex.practicum.filmorate.storage.cache.TopReviewsCache;
+import ru.yandex.practicum.filmorate.storage.index.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.storage.index.FilmChangeListener;
+import ru.yandex.practicum.filmorate.storage.index.FriendPathFinder;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserService {
+    private static final int MAX_PATH_DEPTH = 10;
     private final UserStorage userStorage;
+    private final TimelineService timelineService;
+    private final FriendshipGraph friendshipGraph;
+    private final FriendSuggestionEngine friendSuggestionEngine;
+    private final FriendSuggestionCache friendSuggestionCache;
+    private final FriendPathFinder friendPathFinder;
+    private final TopReviewsCache topReviewsCache;
+    private final RequestIdentityMap requestIdentityMap;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final List<FilmChangeListener> filmChangeListeners;
 
     public UserDto createUser(NewUserDto dto) {
-        User user = UserMapper.mapToUser(dto);
-        return UserMapper.mapToUserDto(userStorage.createUser(user));
+        User user = userStorage.createUser(UserMapper.mapToUser(dto));
+        friendshipGraph.onUserCreated(user.getId());
+        return UserMapper.mapToUserDto(user);
     }
 
     public List<UserDto> getAllUsers() {
@@ -43,8 +72,16 @@ public class UserService {
                 .toList();
     }
 
+    public PageDto<UserDto> getUsersPage(Integer after, Integer limit) {
+        int pageSize = PageDto.checkLimit(limit);
+        List<UserDto> users = userStorage.getUsersPage(after == null ? 0 : after, pageSize + 1).stream()
+                .map(UserMapper::mapToUserDto)
+                .toList();
+        return PageDto.of(users, pageSize, user -> String.valueOf(user.getId()));
+    }
+
     public UserDto getUserById(int id) {
-        return Optional.ofNullable(userStorage.getUserById(id))
+        return Optional.ofNullable(requestIdentityMap.getUser(id))
                 .map(UserMapper::mapToUserDto)
                 .orElseThrow(() -> {
                     log.info("Error while getting user by id. User not found id: {}", id);
@@ -57,13 +94,15 @@ public class UserService {
             log.info("User updating failed: id not provided");
             throw new ValidationException("Id должен быть указан");
         }
-        User oldUser = userStorage.getUserById(updateUserDto.getId());
+        User oldUser = requestIdentityMap.getUser(updateUserDto.getId());
         if (oldUser == null) {
             log.info("User updating failed: user with id = {} not found", updateUserDto.getId());
             throw new NotFoundException("Пользователь с id = " + updateUserDto.getId() + " не найден");
         }
         User updatedUser = UserMapper.updateUserFields(oldUser, updateUserDto);
-        return UserMapper.mapToUserDto(userStorage.updateUser(updatedUser));
+        User savedUser = userStorage.updateUser(updatedUser);
+        requestIdentityMap.evictUser(savedUser.getId());
+        return UserMapper.mapToUserDto(savedUser);
     }
 
     public void addFriend(int userId, int friendId) {
@@ -71,36 +110,40 @@ public class UserService {
             throw new ConditionsNotMetException("Пользователь не может добавить в друзья самого себя");
         }
 
-        User user = userStorage.getUserById(userId);
-        if (user == null) {
+        if (!friendshipGraph.containsUser(userId)) {
             log.info("User with id = {} not found", userId);
             throw new NotFoundException("Ошибка добавления пользователя в друзья. " +
                     "Пользователь с id = " + userId + " не найден");
         }
-        User friend = userStorage.getUserById(friendId);
-        if (friend == null) {
+        if (!friendshipGraph.containsUser(friendId)) {
             log.info("User with id = {} not found", friendId);
             throw new NotFoundException("Ошибка добавления пользователя в друзья. " +
                     "Пользователь с id = " + friendId + " не найден");
         }
-        if (user.getFriends().containsKey(friendId)) {
+        if (friendshipGraph.hasFriend(userId, friendId)) {
             log.info("User with id = {} has already been added to friends", friendId);
             throw new DuplicateFriendException("Ошибка добавления пользователя в друзья. " +
                     "Пользователь с id = " + friendId + " уже добавлен");
         }
 
-        boolean isReciprocalFriendship = friend.getFriends().containsKey(userId);
+        boolean isReciprocalFriendship = friendshipGraph.hasFriend(friendId, userId);
         int friendshipStatusId = FriendshipStatus.NOT_CONFIRMED.getId();
         if (isReciprocalFriendship) {
             friendshipStatusId = FriendshipStatus.CONFIRMED.getId();
             userStorage.updateFriendshipStatus(friendId, userId, friendshipStatusId);
+            friendshipGraph.onFriendshipChanged(friendId, userId, true);
         }
         userStorage.addFriend(userId, friendId, friendshipStatusId);
+        friendshipGraph.onFriendshipChanged(userId, friendId, isReciprocalFriendship);
+        requestIdentityMap.evictUser(userId);
+        requestIdentityMap.evictUser(friendId);
+        timelineService.evict(userId);
     }
 
     public Collection<UserDto> getUserFriends(int userId) {
-        Optional.ofNullable(userStorage.getUserById(userId)).orElseThrow(() ->
-                new NotFoundException("Ошибка получения списка друзей. Пользователь с id = " + userId + " не найден"));
+        if (!friendshipGraph.containsUser(userId)) {
+            throw new NotFoundException("Ошибка получения списка друзей. Пользователь с id = " + userId + " не найден");
+        }
 
         return userStorage.getUserFriends(userId).stream()
                 .map(UserMapper::mapToUserDto)
@@ -108,42 +151,44 @@ public class UserService {
     }
 
     public boolean deleteFriend(int userId, int friendId) {
-        User user = userStorage.getUserById(userId);
-        if (user == null) {
+        if (!friendshipGraph.containsUser(userId)) {
             log.info("User with id = {} not found", userId);
             throw new NotFoundException("Ошибка удаления пользователя из друзей. " +
                     "Пользователь с id = " + userId + " не найден");
         }
-
-        User friend = userStorage.getUserById(friendId);
-        if (friend == null) {
+        if (!friendshipGraph.containsUser(friendId)) {
             log.info("User with id = {} not found", friendId);
             throw new NotFoundException("Ошибка удаления пользователя из друзей. " +
                     "Пользователь с id = " + friendId + " не найден");
         }
 
-        boolean isReciprocalFriendship = friend.getFriends().containsKey(userId);
+        boolean isReciprocalFriendship = friendshipGraph.hasFriend(friendId, userId);
         if (isReciprocalFriendship) {
             userStorage.updateFriendshipStatus(friendId, userId, FriendshipStatus.NOT_CONFIRMED.getId());
+            friendshipGraph.onFriendshipChanged(friendId, userId, false);
+        }
+        boolean deleted = userStorage.deleteFriend(userId, friendId);
+        if (deleted) {
+            friendshipGraph.onFriendRemoved(userId, friendId);
         }
-        return userStorage.deleteFriend(userId, friendId);
+        requestIdentityMap.evictUser(userId);
+        requestIdentityMap.evictUser(friendId);
+        timelineService.evict(userId);
+        return deleted;
     }
 
     public Collection<UserDto> getCommonFriends(int userId1, int userId2) {
-        User user1 = userStorage.getUserById(userId1);
-        if (user1 == null) {
+        if (!friendshipGraph.containsUser(userId1)) {
             log.info("User with id = {} not found", userId1);
             throw new NotFoundException("Ошибка получения общих друзей. Пользователь id:" + userId1 + " не найден");
         }
-
-        User user2 = userStorage.getUserById(userId2);
-        if (user2 == null) {
+        if (!friendshipGraph.containsUser(userId2)) {
             log.info("User with id = {} not found", userId2);
             throw new NotFoundException("Ошибка получения общих друзей. Пользователь id:" + userId2 + " не найден");
         }
 
-        List<Integer> commonFriendsIds = user1.getFriendsIds().stream()
-                .filter(user2.getFriendsIds()::contains)
+        List<Integer> commonFriendsIds = Arrays.stream(friendshipGraph.getCommonFriends(userId1, userId2))
+                .boxed()
                 .toList();
 
         if (commonFriendsIds.isEmpty()) {
@@ -155,17 +200,103 @@ public class UserService {
                 .toList();
     }
 
+    public List<UserDto> getFriendSuggestions(int userId, int count) {
+        if (!friendshipGraph.containsUser(userId)) {
+            log.info("User with id = {} not found", userId);
+            throw new NotFoundException("Ошибка получения возможных друзей. Пользователь с id = " + userId + " не найден");
+        }
+        if (count <= 0) {
+            throw new ValidationException("Количество возможных друзей должно быть положительным");
+        }
+
+        List<Integer> suggestedIds = Optional.ofNullable(friendSuggestionCache.get(userId, count))
+                .orElseGet(() -> friendSuggestionEngine.suggest(userId, count));
+        if (suggestedIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return findUsersInOrder(suggestedIds);
+    }
+
+    public List<UserDto> getFriendPath(int userId, int otherId, int maxDepth) {
+        if (!friendshipGraph.containsUser(userId)) {
+            log.info("User with id = {} not found", userId);
+            throw new NotFoundException("Ошибка поиска цепочки друзей. Пользователь с id = " + userId + " не найден");
+        }
+        if (!friendshipGraph.containsUser(otherId)) {
+            log.info("User with id = {} not found", otherId);
+            throw new NotFoundException("Ошибка поиска цепочки друзей. Пользователь с id = " + otherId + " не найден");
+        }
+        if (maxDepth <= 0 || maxDepth > MAX_PATH_DEPTH) {
+            throw new ValidationException("Длина цепочки друзей должна быть от 1 до " + MAX_PATH_DEPTH);
+        }
+
+        int[] path = friendPathFinder.findPath(userId, otherId, maxDepth);
+        if (path == null) {
+            log.info("Friend path from user {} to user {} not found within depth {}", userId, otherId, maxDepth);
+            throw new NotFoundException("Цепочка друзей от пользователя с id = " + userId +
+                    " до пользователя с id = " + otherId + " длиной не более " + maxDepth + " не найдена");
+        }
+        return findUsersInOrder(Arrays.stream(path).boxed().toList());
+    }
+
     public boolean deleteUserById(int userId) {
-        boolean deleted = userStorage.deleteUserById(userId);
+        // лайки читаются, а отложенные операции пользователя удаляются без параллельной записи очереди,
+        // чтобы получатели изменений узнали о каждом лайке, который они успели учесть
+        Set<Integer> likedFilmIds = new HashSet<>();
+        boolean deleted = likeWriteBuffer.pauseFlush(() -> {
+            likedFilmIds.addAll(userStorage.getLikedFilmIds(userId));
+            if (!userStorage.deleteUserById(userId)) {
+                return false;
+            }
+            likeWriteBuffer.purge(like -> like.getUserId() == userId).forEach((like, operation) -> {
+                if (operation == LikeOperation.ADD) {
+                    likedFilmIds.add(like.getFilmId());
+                } else {
+                    likedFilmIds.remove(like.getFilmId());
+                }
+            });
+            return true;
+        });
         if (!deleted) {
             throw new NotFoundException("Пользователь с id=" + userId + " не найден");
         }
+        friendshipGraph.onUserDeleted(userId);
+        requestIdentityMap.evictUser(userId);
+        topReviewsCache.onUserDeleted();
+        // лайки пользователя удалены каскадно, отложенные - из очереди записи
+        likedFilmIds.forEach(filmId ->
+                filmChangeListeners.forEach(listener -> listener.onLikeRemoved(filmId, userId)));
         return true;
     }
 
+    // Пользователи читаются из базы без сохранения порядка, поэтому исходный порядок id восстанавливается
+    private List<UserDto> findUsersInOrder(List<Integer> userIds) {
+        Map<Integer, Integer> positions = IntStream.range(0, userIds.size()).boxed()
+                .collect(Collectors.toMap(userIds::get, Function.identity()));
+        return userStorage.findUsersByIds(userIds).stream()
+                .sorted(Comparator.comparingInt(user -> positions.get(user.getId())))
+                .map(UserMapper::mapToUserDto)
+                .toList();
+    }
+
     public List<FeedDto> getUserFeed(int userId) {
-        Optional.ofNullable(userStorage.getUserById(userId)).orElseThrow(() ->
-                new NotFoundException("Ошибка получения ленты пользователя. Пользователь с id = " + userId + " не найден"));
+        if (!requestIdentityMap.existsUser(userId)) {
+            throw new NotFoundException("Ошибка получения ленты пользователя. Пользователь с id = " + userId + " не найден");
+        }
         return userStorage.getUserFeed(userId);
     }
+
+    // Страницы идут от новых событий к старым, внутри страницы события упорядочены по возрастанию, как в полной ленте
+    public PageDto<FeedDto> getUserFeedPage(int userId, Integer before, Integer limit) {
+        if (!requestIdentityMap.existsUser(userId)) {
+            throw new NotFoundException("Ошибка получения ленты пользователя. Пользователь с id = " + userId + " не найден");
+        }
+        int pageSize = PageDto.checkLimit(limit);
+        List<FeedDto> events = userStorage.getUserFeedPage(userId, before == null ? Integer.MAX_VALUE : before,
+                pageSize + 1);
+        PageDto<FeedDto> page = PageDto.of(events, pageSize, event -> String.valueOf(event.getEventId()));
+        page.setItems(page.getItems().reversed());
+        return page;
+    }
 }
@@ -2,18 +2,29 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface FilmStorage {
     Film createFilm(Film film);
 
     List<Film> getAllFilms();
 
+    List<Film> getFilmsPage(int afterId, int limit);
+
     Film getFilmById(int filmId);
 
+    boolean existsFilmById(int filmId);
+
+    List<Film> getFilmsByIds(List<Integer> filmIds);
+
     Film updateFilm(Film newFilm);
 
     List<Genre> getAllGenres();
@@ -26,29 +37,29 @@ public interface FilmStorage {
 
     Mpa getRatingById(int ratingId);
 
-    List<Integer> getFilmLikes(int filmId);
+    boolean hasLike(int filmId, int userId);
 
-    void addLike(int filmId, int userId);
+    boolean addLike(int filmId, int userId);
 
-    void deleteLike(int filmId, int userId);
+    boolean deleteLike(int filmId, int userId);
 
-    boolean deleteFilmById(int filmId);
+    Set<FilmLike> applyLikes(List<FilmLike> likesToAdd, List<FilmLike> likesToDelete);
 
-    List<Film> getMostPopular(int count);
+    void flushLikes(List<FilmLike> likesToAdd, List<FilmLike> likesToDelete, List<LikeEvent> events);
 
-    void addFilmDirectors(int filmId, List<Director> directors);
+    Set<Integer> getExistingFilmIds(Collection<Integer> filmIds);
 
-    List<Film> getFilmsByDirector(int directorId, String sortBy);
+    int rebuildLikesCounts();
 
-    List<Director> getFilmDirectors(int filmId);
+    Map<Integer, Integer> getLikesCounts();
 
-    List<Film> getPopularFilmsByGenreAndYear(Integer count, Integer genreId, Integer year);
+    boolean deleteFilmById(int filmId);
 
-    List<Film> getCommonFilms(int userId, int friendId);
+    void addFilmDirectors(int filmId, List<Director> directors);
 
-    List<Film> searchFilms(String query, boolean searchByTitle, boolean searchByDirector);
+    List<Film> getFilmsByDirector(int directorId, String sortBy);
 
-    List<Film> getRecommended(int userId);
+    List<Film> getCommonFilms(int userId, int friendId);
 
     List<Director> getDirectorsByIds(List<Integer> directorIds);
 }
@@ -11,9 +11,25 @@ public interface ReviewStorage {
 
     Optional<Review> getReviewById(int reviewId);
 
-    List<Review> getReviewsByFilm(int filmId, int count);
+    // withContent = false оставляет текст отзыва незаполненным, не читая его из базы
+    List<Review> getReviewsByFilm(int filmId, int count, boolean withContent);
 
-    List<Review> getAllReviews(int count);
+    List<Review> getAllReviews(int count, boolean withContent);
+
+    Optional<String> getReviewContent(int reviewId);
+
+    /**
+     * Страница отзывов в порядке убывания полезности, при равенстве - возрастания id,
+     * начиная с первого отзыва после отзыва с полезностью {@code afterUseful} и id {@code afterReviewId}.
+     *
+     * @param filmId id фильма или null для отзывов всех фильмов
+     */
+    List<Review> getReviewsPage(Integer filmId, int afterUseful, int afterReviewId, int limit, boolean withContent);
+
+    /**
+     * Отзывы с заданными id в произвольном порядке.
+     */
+    List<Review> getReviewsByIds(List<Integer> reviewIds, boolean withContent);
 
     Review updateReview(Review review);
 
@@ -21,7 +37,16 @@ public interface ReviewStorage {
 
     Optional<ReviewReaction> getReviewReaction(int reviewId, int userId);
 
-    void addReviewReaction(int reviewId, int userId, boolean isPositiveReaction, int useful);
-
-    void deleteReviewReaction(int reviewId, int userId, int useful);
+    /**
+     * Добавляет реакцию или меняет ее на противоположную и сдвигает полезность отзыва одной транзакцией.
+     * Возвращает отзыв с новой полезностью либо пустой результат, если реакция не изменилась:
+     * такая реакция уже есть или нет отзыва или пользователя.
+     */
+    Optional<Review> addReviewReaction(int reviewId, int userId, boolean isPositiveReaction);
+
+    /**
+     * Удаляет реакцию и сдвигает полезность отзыва одной транзакцией.
+     * Возвращает отзыв с новой полезностью либо пустой результат, если такой реакции нет.
+     */
+    Optional<Review> deleteReviewReaction(int reviewId, int userId, boolean isPositiveReaction);
 }
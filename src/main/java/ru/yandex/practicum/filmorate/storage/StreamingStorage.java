@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение всех записей таблиц, без накопления выборки в памяти.
+ * Используется при построении индексов в памяти и при выгрузке данных; формат выгрузки задается сервисом выгрузки.
+ */
+public interface StreamingStorage {
+    void streamFilms(Consumer<Film> consumer);
+
+    void streamUsers(Consumer<User> consumer);
+
+    void streamFilmLikes(Consumer<FilmLike> consumer);
+
+    // дружба передается вместе с id пользователя, которому она принадлежит
+    void streamFriendships(BiConsumer<Integer, Friendship> consumer);
+}
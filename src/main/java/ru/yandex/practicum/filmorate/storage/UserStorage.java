@@ -3,15 +3,22 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.dto.user.FeedDto;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface UserStorage {
     User createUser(User user);
 
     List<User> getAllUsers();
 
+    List<User> getUsersPage(int afterId, int limit);
+
     User getUserById(int userId);
 
+    boolean existsUserById(int userId);
+
     User updateUser(User user);
 
     void addFriend(int userId, int friendId, int friendshipStatusId);
@@ -26,5 +33,15 @@ public interface UserStorage {
 
     List<User> findUsersByIds(List<Integer> userIds);
 
+    Set<Integer> getExistingUserIds(Collection<Integer> userIds);
+
+    List<Integer> getLikedFilmIds(int userId);
+
     List<FeedDto> getUserFeed(int userId);
+
+    List<FeedDto> getUserFeedPage(int userId, int beforeEventId, int limit);
+
+    List<Integer> getFriendIds(int userId);
+
+    Map<Integer, Integer> getLatestFeedEventIds(Collection<Integer> userIds, int beforeEventId);
 }
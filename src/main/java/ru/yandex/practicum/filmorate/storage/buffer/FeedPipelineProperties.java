@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.storage.buffer;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.feed.pipeline")
+public class FeedPipelineProperties {
+    // SYNC - событие пишется в транзакции операции, ASYNC - фоновым потоком после ее фиксации
+    private Durability durability = Durability.SYNC;
+    // размер кольцевого буфера событий, округляется вверх до степени двойки
+    private int capacity = 8192;
+    // наибольшее число событий в одной пакетной вставке
+    private int batchSize = 500;
+    // если фоновая запись стоит дольше, запросы дожидаются записи своих событий
+    private long maxLagMs = 1000;
+
+    public enum Durability {
+        SYNC,
+        ASYNC
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.storage.buffer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченный кольцевой буфер без блокировок для многих производителей и одного потребителя.
+ * Каждая ячейка хранит номер позиции, для которой она готова: производитель занимает позицию CAS'ом
+ * и публикует элемент записью номера, потребитель забирает элементы строго в порядке позиций.
+ */
+public class FeedRingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // читается производителями только для оценки размера, изменяется одним потребителем
+    private volatile long head;
+
+    public FeedRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        slots = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Добавляет элемент в буфер.
+     *
+     * @return позиция элемента либо -1, если буфер заполнен
+     */
+    public long offer(T item) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, item);
+                    sequences.set(index, position + 1);
+                    return position;
+                }
+            } else if (available < 0) {
+                return -1;
+            }
+            // позицию занял другой производитель, попытка повторяется со следующей
+        }
+    }
+
+    /**
+     * Переносит в список до {@code maxItems} опубликованных элементов. Вызывается только потребителем.
+     *
+     * @return число перенесенных элементов
+     */
+    public int drainTo(List<T> target, int maxItems) {
+        int drained = 0;
+        long position = head;
+        while (drained < maxItems) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            target.add(slots.get(index));
+            slots.set(index, null);
+            sequences.set(index, position + mask + 1);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    /**
+     * Позиция следующего элемента, который заберет потребитель.
+     */
+    public long getHead() {
+        return head;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage.buffer;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.likes.write-behind")
+public class LikeWriteBehindProperties {
+    // лайки пишутся в базу фоновыми пакетами вместо записи в каждом запросе
+    private boolean enabled = false;
+    // период фоновой записи накопленных лайков
+    private long flushIntervalMs = 100;
+    // число накопленных операций, при котором запись запускается не дожидаясь периода
+    private int flushBatchSize = 1000;
+    // предел накопленных операций; при его достижении запрос сам записывает накопленное
+    private int capacity = 50_000;
+}
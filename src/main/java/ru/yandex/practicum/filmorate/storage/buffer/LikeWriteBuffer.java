@@ -0,0 +1,383 @@
+package ru.yandex.practicum.filmorate.storage.buffer;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Буфер отложенной записи лайков.
+ * Повторные операции с одной парой фильм-пользователь схлопываются в последнюю, накопленное записывается
+ * в базу одной транзакцией по таймеру или по достижении размера пакета. Пока операции не записаны,
+ * чтения лайков видят их через {@link #applyPendingLikes(Film)} и {@link #getPendingOperation(int, int)}.
+ * Останавливается после веб-сервера и до закрытия пула соединений, записывая все накопленное.
+ */
+@Slf4j
+@Component
+public class LikeWriteBuffer implements SmartLifecycle, MeterBinder {
+    private final LikeWriteBehindProperties properties;
+    private final FilmStorage filmStorage;
+    // одновременно выполняется только одна запись накопленных операций
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private PendingLikes pending = new PendingLikes();
+    // операции, которые записываются прямо сейчас и еще не видны в базе
+    private PendingLikes flushing = new PendingLikes();
+    // увеличивается после каждой записи; позволяет понять, что база изменилась во время проверки лайка
+    private long flushGeneration;
+    private long flushCount;
+    private long flushNanos;
+    private ScheduledExecutorService flusher;
+
+    public LikeWriteBuffer(LikeWriteBehindProperties properties, @Lazy FilmStorage filmStorage) {
+        this.properties = properties;
+        this.filmStorage = filmStorage;
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, properties.getFlushIntervalMs(),
+                properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("Like write-behind enabled: flush every {} ms or {} operations, capacity {}",
+                properties.getFlushIntervalMs(), properties.getFlushBatchSize(), properties.getCapacity());
+    }
+
+    @Override
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(properties.getFlushIntervalMs() * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher = null;
+        flush();
+        log.info("Like write-behind stopped, pending likes flushed");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return flusher != null;
+    }
+
+    @Override
+    public int getPhase() {
+        // веб-сервер останавливается в более поздней фазе, то есть раньше буфера
+        return 0;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Ставит операцию в очередь записи.
+     * Если очередь заполнена, запрос сам записывает накопленное; если запись не удалась, операция отклоняется.
+     *
+     * @return true, если операция меняет состояние лайка с учетом еще не записанных операций
+     * @throws ServiceUnavailableException если очередь заполнена и записать ее не удалось
+     */
+    public boolean submit(int filmId, int userId, LikeOperation operation) {
+        FilmLike like = new FilmLike(filmId, userId);
+        boolean accepted;
+        int size;
+        while (true) {
+            boolean full = false;
+            LikeOperation known;
+            long generation;
+            synchronized (this) {
+                known = lookup(like);
+                generation = flushGeneration;
+            }
+            boolean liked = known == null ? filmStorage.hasLike(filmId, userId) : known == LikeOperation.ADD;
+
+            synchronized (this) {
+                // база изменилась записью накопленных операций во время проверки, проверка повторяется
+                if (generation != flushGeneration) {
+                    continue;
+                }
+                // за время проверки операцию с той же парой мог поставить в очередь параллельный запрос
+                LikeOperation current = lookup(like);
+                if (current != null) {
+                    liked = current == LikeOperation.ADD;
+                }
+                accepted = liked != (operation == LikeOperation.ADD);
+                if (accepted && pending.size() >= properties.getCapacity()) {
+                    full = true;
+                } else if (accepted) {
+                    pending.add(like, new LikeEvent(filmId, userId, operation, LocalDateTime.now()));
+                }
+                size = pending.size();
+            }
+            if (!full) {
+                break;
+            }
+            // очередь заполнена: запрос сам записывает накопленное, что ограничивает скорость поступления,
+            // и повторяет проверку уже по записанному состоянию
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("Like write-behind queue is full and cannot be flushed, rejecting operation", e);
+                throw new ServiceUnavailableException("Сервис временно не может принять лайк, повторите позже");
+            }
+        }
+
+        if (size >= properties.getFlushBatchSize() && flusher != null
+                && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        return accepted;
+    }
+
+    /**
+     * Еще не записанная в базу операция с лайком либо null, если такой нет.
+     */
+    public synchronized LikeOperation getPendingOperation(int filmId, int userId) {
+        return lookup(new FilmLike(filmId, userId));
+    }
+
+    /**
+     * Применяет к лайкам фильма еще не записанные операции.
+     * Лайки фильма из кэша неизменяемы, поэтому фильм получает новое множество лайков.
+     */
+    public void applyPendingLikes(Film film) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Map<Integer, LikeOperation> operations;
+        synchronized (this) {
+            if (pending.size() == 0 && flushing.size() == 0) {
+                return;
+            }
+            operations = new HashMap<>(flushing.getFilmOperations(film.getId()));
+            operations.putAll(pending.getFilmOperations(film.getId()));
+        }
+        if (operations.isEmpty()) {
+            return;
+        }
+        Set<Integer> likes = new HashSet<>(film.getLikes());
+        operations.forEach((userId, operation) -> {
+            if (operation == LikeOperation.ADD) {
+                likes.add(userId);
+            } else {
+                likes.remove(userId);
+            }
+        });
+        film.setLikes(likes);
+    }
+
+    /**
+     * Выполняет действие, не давая записать накопленные операции до его завершения.
+     * Внутри действия очередь содержит только еще не записанные операции, их можно удалить через {@link #purge}.
+     */
+    public <T> T pauseFlush(Supplier<T> action) {
+        flushLock.lock();
+        try {
+            return action.get();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет из очереди операции с подходящими парами фильм-пользователь, например после удаления
+     * пользователя или фильма, когда записать их уже нельзя.
+     *
+     * @return последняя операция по каждой удаленной паре
+     */
+    public Map<FilmLike, LikeOperation> purge(Predicate<FilmLike> filter) {
+        flushLock.lock();
+        try {
+            synchronized (this) {
+                Map<FilmLike, LikeOperation> purged = pending.removeIf(filter);
+                if (!purged.isEmpty()) {
+                    // проверки лайков, начатые до удаления, должны повториться
+                    flushGeneration++;
+                }
+                return purged;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public synchronized int getQueueDepth() {
+        return pending.size() + flushing.size();
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushScheduled.set(false);
+            PendingLikes batch;
+            synchronized (this) {
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending;
+                flushing = batch;
+                pending = new PendingLikes();
+            }
+
+            long start = System.nanoTime();
+            try {
+                filmStorage.flushLikes(batch.getLikesToAdd(), batch.getLikesToDelete(), batch.events);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    // более поздние операции важнее возвращаемых в очередь
+                    batch.addAll(pending);
+                    pending = batch;
+                    flushing = new PendingLikes();
+                }
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            synchronized (this) {
+                flushing = new PendingLikes();
+                flushGeneration++;
+                flushCount++;
+                flushNanos += elapsed;
+            }
+            log.debug("Flushed {} like operations in {} ms", batch.size(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.likes.buffer.depth", this, LikeWriteBuffer::getQueueDepth)
+                .description("Like operations waiting to be written to the database")
+                .register(registry);
+        FunctionTimer.builder("filmorate.likes.buffer.flush", this,
+                        LikeWriteBuffer::getFlushCount, LikeWriteBuffer::getFlushNanos, TimeUnit.NANOSECONDS)
+                .description("Batched writes of buffered like operations")
+                .register(registry);
+    }
+
+    private synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    private synchronized double getFlushNanos() {
+        return flushNanos;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush buffered likes, will retry", e);
+        }
+    }
+
+    private LikeOperation lookup(FilmLike like) {
+        LikeOperation operation = pending.get(like);
+        return operation != null ? operation : flushing.get(like);
+    }
+
+    private static class PendingLikes {
+        private final Map<FilmLike, LikeOperation> operations = new LinkedHashMap<>();
+        private final Map<Integer, Map<Integer, LikeOperation>> operationsByFilm = new HashMap<>();
+        // события ленты сохраняют все принятые операции в порядке поступления
+        private final List<LikeEvent> events = new ArrayList<>();
+
+        void add(FilmLike like, LikeEvent event) {
+            operations.put(like, event.getOperation());
+            operationsByFilm.computeIfAbsent(like.getFilmId(), k -> new HashMap<>())
+                    .put(like.getUserId(), event.getOperation());
+            events.add(event);
+        }
+
+        void addAll(PendingLikes later) {
+            later.events.forEach(event -> add(new FilmLike(event.getFilmId(), event.getUserId()), event));
+        }
+
+        Map<FilmLike, LikeOperation> removeIf(Predicate<FilmLike> filter) {
+            Map<FilmLike, LikeOperation> removed = new HashMap<>();
+            operations.entrySet().removeIf(entry -> {
+                if (!filter.test(entry.getKey())) {
+                    return false;
+                }
+                removed.put(entry.getKey(), entry.getValue());
+                Map<Integer, LikeOperation> filmOperations = operationsByFilm.get(entry.getKey().getFilmId());
+                filmOperations.remove(entry.getKey().getUserId());
+                if (filmOperations.isEmpty()) {
+                    operationsByFilm.remove(entry.getKey().getFilmId());
+                }
+                return true;
+            });
+            if (!removed.isEmpty()) {
+                events.removeIf(event -> filter.test(new FilmLike(event.getFilmId(), event.getUserId())));
+            }
+            return removed;
+        }
+
+        LikeOperation get(FilmLike like) {
+            return operations.get(like);
+        }
+
+        Map<Integer, LikeOperation> getFilmOperations(int filmId) {
+            return operationsByFilm.getOrDefault(filmId, Collections.emptyMap());
+        }
+
+        // размер считается по событиям, чтобы многократные переключения одного лайка тоже ограничивались
+        int size() {
+            return events.size();
+        }
+
+        List<FilmLike> getLikesToAdd() {
+            return getLikes(LikeOperation.ADD);
+        }
+
+        List<FilmLike> getLikesToDelete() {
+            return getLikes(LikeOperation.REMOVE);
+        }
+
+        private List<FilmLike> getLikes(LikeOperation operation) {
+            return operations.entrySet().stream()
+                    .filter(entry -> entry.getValue() == operation)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.index.DirectorChangeListener;
+import ru.yandex.practicum.filmorate.storage.index.FilmChangeListener;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Ограниченный по размеру кэш фильмов с приближенным вытеснением давно не использованных записей.
+ * Чтения не блокируют друг друга: записи хранятся в {@link ConcurrentHashMap}, а при переполнении
+ * вытесняются по алгоритму «второго шанса» - запись, прочитанная с прошлого обхода, пропускается один раз.
+ * Изменения из хранилища применяются к кэшу после фиксации транзакции, при откате запись вытесняется.
+ * Пока транзакция не завершена, измененные в ней фильмы читаются в этой транзакции мимо кэша.
+ * Фильм, прочитанный из базы, попадает в кэш, только если с начала чтения его не изменили.
+ * Хранимые фильмы не меняются на месте: изменение заменяет фильм в записи, а лайки хранятся неизменяемым
+ * множеством, которое выданные копии разделяют с кэшем.
+ */
+@Component
+public class FilmCache implements FilmChangeListener, DirectorChangeListener, MeterBinder {
+    // число счетчиков изменений; фильмы с одинаковым остатком от деления id делят счетчик
+    private static final int STAMP_STRIPES = 1024;
+    private final FilmCacheProperties properties;
+    private final Map<Integer, CachedFilm> films = new ConcurrentHashMap<>();
+    // записи в порядке обхода при вытеснении; удаленные из кэша записи пропускаются при обходе
+    private final Queue<CachedFilm> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger evictionQueueSize = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FilmCache(FilmCacheProperties properties) {
+        this.properties = properties;
+    }
+
+    public Film get(int filmId) {
+        CachedFilm cached = isPendingInTransaction(filmId) ? null : films.get(filmId);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        cached.referenced = true;
+        return copy(cached.film);
+    }
+
+    public boolean contains(int filmId) {
+        return !isPendingInTransaction(filmId) && films.containsKey(filmId);
+    }
+
+    /**
+     * Счетчик изменений фильма; снимается перед чтением фильма из базы и передается в {@link #load(Film, long)}.
+     */
+    public long stamp(int filmId) {
+        return stamps.get(stripe(filmId));
+    }
+
+    public void load(Film film, long stamp) {
+        if (isPendingInTransaction(film.getId())) {
+            return;
+        }
+        Film snapshot = copy(film);
+        // проверка счетчика и вставка атомарны относительно изменений того же фильма
+        store(snapshot, () -> stamps.get(stripe(snapshot.getId())) == stamp);
+    }
+
+    public void put(Film film) {
+        Film snapshot = copy(film);
+        afterCommit(film.getId(), () -> store(snapshot, () -> true));
+    }
+
+    public void addLike(int filmId, int userId) {
+        changeLikes(filmId, likes -> likes.add(userId));
+    }
+
+    public void removeLike(int filmId, int userId) {
+        changeLikes(filmId, likes -> likes.remove(userId));
+    }
+
+    public void evict(int filmId) {
+        afterCommit(filmId, () -> films.remove(filmId));
+    }
+
+    @Override
+    public void onLikeRemoved(int filmId, int userId) {
+        // лайки удаленного пользователя удаляются каскадно мимо хранилища фильмов
+        removeLike(filmId, userId);
+    }
+
+    @Override
+    public void onDirectorUpdated(Director director) {
+        evictFilmsOfDirector(director.getId());
+    }
+
+    @Override
+    public void onDirectorDeleted(int directorId) {
+        evictFilmsOfDirector(directorId);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.film.cache.requests", this, FilmCache::getHits)
+                .description("Film cache lookups")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film.cache.requests", this, FilmCache::getMisses)
+                .description("Film cache lookups")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film.cache.evictions", this, FilmCache::getEvictions)
+                .description("Films evicted from the cache by size limit")
+                .register(registry);
+        Gauge.builder("filmorate.film.cache.hit.ratio", this, FilmCache::getHitRatio)
+                .description("Share of film cache lookups served from the cache")
+                .register(registry);
+        Gauge.builder("filmorate.film.cache.size", this, FilmCache::size)
+                .description("Films held in the cache")
+                .register(registry);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long requests = hitCount + misses.sum();
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+
+    public int size() {
+        return films.size();
+    }
+
+    private void store(Film snapshot, BooleanSupplier condition) {
+        boolean[] inserted = new boolean[1];
+        films.compute(snapshot.getId(), (filmId, cached) -> {
+            if (!condition.getAsBoolean()) {
+                return cached;
+            }
+            if (cached != null) {
+                cached.film = snapshot;
+                return cached;
+            }
+            inserted[0] = true;
+            return new CachedFilm(snapshot);
+        });
+        if (inserted[0]) {
+            CachedFilm cached = films.get(snapshot.getId());
+            if (cached != null) {
+                evictionQueue.offer(cached);
+                evictionQueueSize.incrementAndGet();
+            }
+            evictIfNeeded();
+        }
+    }
+
+    // Обходит очередь, пока кэш переполнен или в очереди слишком много уже удаленных записей
+    private void evictIfNeeded() {
+        int maxSize = properties.getMaxSize();
+        if (films.size() <= maxSize && evictionQueueSize.get() <= 2 * maxSize) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            for (int visits = evictionQueueSize.get() * 2; visits > 0
+                    && (films.size() > maxSize || evictionQueueSize.get() > 2 * maxSize); visits--) {
+                CachedFilm candidate = evictionQueue.poll();
+                if (candidate == null) {
+                    return;
+                }
+                evictionQueueSize.decrementAndGet();
+                if (films.get(candidate.filmId) != candidate) {
+                    continue;
+                }
+                if (candidate.referenced || films.size() <= maxSize) {
+                    candidate.referenced = false;
+                    evictionQueue.offer(candidate);
+                    evictionQueueSize.incrementAndGet();
+                } else if (films.remove(candidate.filmId, candidate)) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void changeLikes(int filmId, Consumer<Set<Integer>> change) {
+        afterCommit(filmId, () -> films.computeIfPresent(filmId, (id, cached) -> {
+            Set<Integer> likes = new HashSet<>(cached.film.getLikes());
+            change.accept(likes);
+            Film film = copy(cached.film);
+            film.setLikes(Set.copyOf(likes));
+            cached.film = film;
+            return cached;
+        }));
+    }
+
+    private void evictFilmsOfDirector(int directorId) {
+        // счетчики увеличиваются до удаления, чтобы уже начатые чтения не вернули фильм в кэш
+        for (int stripe = 0; stripe < STAMP_STRIPES; stripe++) {
+            stamps.incrementAndGet(stripe);
+        }
+        films.values().removeIf(cached -> cached.film.getDirectors().stream()
+                .anyMatch(director -> director.getId() == directorId));
+    }
+
+    private void afterCommit(int filmId, Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(filmId, change);
+            return;
+        }
+        pendingChanges().add(new PendingChange(filmId, change));
+    }
+
+    private void apply(int filmId, Runnable change) {
+        stamps.incrementAndGet(stripe(filmId));
+        change.run();
+    }
+
+    private void discard(int filmId) {
+        stamps.incrementAndGet(stripe(filmId));
+        films.remove(filmId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<PendingChange> pendingChanges() {
+        List<PendingChange> changes = (List<PendingChange>) TransactionSynchronizationManager.getResource(this);
+        if (changes != null) {
+            return changes;
+        }
+
+        List<PendingChange> newChanges = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, newChanges);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(FilmCache.this);
+                for (PendingChange pending : newChanges) {
+                    if (status == STATUS_COMMITTED) {
+                        apply(pending.filmId(), pending.change());
+                    } else {
+                        discard(pending.filmId());
+                    }
+                }
+            }
+        });
+        return newChanges;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean isPendingInTransaction(int filmId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        List<PendingChange> changes = (List<PendingChange>) TransactionSynchronizationManager.getResource(this);
+        return changes != null && changes.stream().anyMatch(pending -> pending.filmId() == filmId);
+    }
+
+    private static int stripe(int filmId) {
+        return filmId & (STAMP_STRIPES - 1);
+    }
+
+    private static Film copy(Film film) {
+        Mpa mpa = film.getMpa() == null ? null : new Mpa(film.getMpa().getId(), film.getMpa().getName());
+        return new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), mpa, new LinkedHashSet<>(film.getGenres()), Set.copyOf(film.getLikes()),
+                new LinkedHashSet<>(film.getDirectors()));
+    }
+
+    private record PendingChange(int filmId, Runnable change) {
+    }
+
+    // Запись кэша; фильм заменяется целиком, а признак чтения сбрасывается при обходе очереди вытеснения
+    private static final class CachedFilm {
+        private final int filmId;
+        private volatile Film film;
+        private volatile boolean referenced;
+
+        CachedFilm(Film film) {
+            this.filmId = film.getId();
+            this.film = film;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.films.cache")
+public class FilmCacheProperties {
+    // число фильмов, хранимых одновременно; давно не использованные вытесняются
+    private int maxSize = 10_000;
+}
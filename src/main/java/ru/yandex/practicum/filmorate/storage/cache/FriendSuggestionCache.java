@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.index.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заранее рассчитанные возможные друзья всех пользователей.
+ * Пересчитываются целиком фоновым потоком и подменяются одним снимком. При чтении из снимка
+ * отбрасываются пользователи, ставшие друзьями или удаленные после расчета.
+ */
+@Slf4j
+@Component
+public class FriendSuggestionCache implements SmartLifecycle {
+    private final FriendSuggestionProperties properties;
+    private final FriendSuggestionEngine friendSuggestionEngine;
+    private final FriendshipGraph friendshipGraph;
+    private volatile Map<Integer, List<Integer>> suggestions = Collections.emptyMap();
+    private ScheduledExecutorService refresher;
+
+    public FriendSuggestionCache(FriendSuggestionProperties properties, FriendSuggestionEngine friendSuggestionEngine,
+                                 FriendshipGraph friendshipGraph) {
+        this.properties = properties;
+        this.friendSuggestionEngine = friendSuggestionEngine;
+        this.friendshipGraph = friendshipGraph;
+    }
+
+    /**
+     * Возможные друзья из снимка либо null, если снимка нет или в нем не хватает пользователей.
+     */
+    public List<Integer> get(int userId, int count) {
+        if (!properties.isPrecomputeEnabled() || count > properties.getPrecomputedCount()) {
+            return null;
+        }
+        List<Integer> precomputed = suggestions.get(userId);
+        if (precomputed == null) {
+            return null;
+        }
+        int[] adjacency = friendshipGraph.getAdjacency(userId);
+        List<Integer> actual = new ArrayList<>(count);
+        for (int candidateId : precomputed) {
+            if (actual.size() == count) {
+                break;
+            }
+            if (friendshipGraph.containsUser(candidateId) && !FriendshipGraph.containsFriend(adjacency, candidateId)) {
+                actual.add(candidateId);
+            }
+        }
+        // снимок мог быть обрезан, поэтому недостающих кандидатов нужно искать заново
+        if (actual.size() < count && precomputed.size() == properties.getPrecomputedCount()) {
+            return null;
+        }
+        return actual;
+    }
+
+    public void refresh() {
+        long start = System.nanoTime();
+        Map<Integer, List<Integer>> refreshed = new HashMap<>();
+        for (int userId : friendshipGraph.getUserIds()) {
+            List<Integer> userSuggestions = friendSuggestionEngine.suggest(userId, properties.getPrecomputedCount());
+            if (!userSuggestions.isEmpty()) {
+                refreshed.put(userId, userSuggestions);
+            }
+        }
+        suggestions = refreshed;
+        log.info("Friend suggestions precomputed for {} users in {} ms", refreshed.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isPrecomputeEnabled() || refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "friend-suggestions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, properties.getRefreshIntervalMs(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (refresher == null) {
+            return;
+        }
+        refresher.shutdownNow();
+        refresher = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return refresher != null;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.error("Failed to precompute friend suggestions", e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.friends.suggestions")
+public class FriendSuggestionProperties {
+    // заранее рассчитывать возможных друзей всех пользователей в фоне
+    private boolean precomputeEnabled = false;
+    // период фонового пересчета
+    private long refreshIntervalMs = 60_000;
+    // число возможных друзей, сохраняемых для каждого пользователя
+    private int precomputedCount = 50;
+}
@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.DirectorChangeListener;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Кэш справочников жанров, рейтингов и режиссёров.
+ * Жанры и рейтинги не изменяются приложением, снимок режиссёров сбрасывается при каждом изменении режиссёров.
+ * Наружу отдаются копии, чтобы изменения вызывающего кода не попадали в снимок.
+ */
+@Component
+public class ReferenceDataCache implements DirectorChangeListener, MeterBinder {
+    private static final String REQUESTS_METRIC = "filmorate.reference.cache.requests";
+    private final ReferenceSnapshot<Genre> genres;
+    private final ReferenceSnapshot<Mpa> ratings;
+    private final ReferenceSnapshot<Director> directors;
+
+    public ReferenceDataCache(FilmStorage filmStorage, DirectorStorage directorStorage) {
+        genres = new ReferenceSnapshot<>(filmStorage::getAllGenres, Genre::getId);
+        ratings = new ReferenceSnapshot<>(filmStorage::getRatings, Mpa::getId);
+        directors = new ReferenceSnapshot<>(directorStorage::getAllDirectors, Director::getId);
+    }
+
+    public List<Genre> getAllGenres() {
+        return genres.get().values().stream().map(ReferenceDataCache::copy).toList();
+    }
+
+    public Genre getGenreById(int genreId) {
+        Genre genre = genres.get().get(genreId);
+        return genre == null ? null : copy(genre);
+    }
+
+    public List<Genre> getGenresByIds(Collection<Integer> genreIds) {
+        return findByIds(genres.get(), genreIds).stream().map(ReferenceDataCache::copy).toList();
+    }
+
+    public List<Mpa> getRatings() {
+        return ratings.get().values().stream().map(ReferenceDataCache::copy).toList();
+    }
+
+    public Mpa getRatingById(int ratingId) {
+        Mpa rating = ratings.get().get(ratingId);
+        return rating == null ? null : copy(rating);
+    }
+
+    public List<Director> getAllDirectors() {
+        return directors.get().values().stream().map(ReferenceDataCache::copy).toList();
+    }
+
+    public Optional<Director> getDirectorById(int directorId) {
+        return Optional.ofNullable(directors.get().get(directorId)).map(ReferenceDataCache::copy);
+    }
+
+    public List<Director> getDirectorsByIds(Collection<Integer> directorIds) {
+        return findByIds(directors.get(), directorIds).stream().map(ReferenceDataCache::copy).toList();
+    }
+
+    @Override
+    public void onDirectorCreated(Director director) {
+        directors.invalidate();
+    }
+
+    @Override
+    public void onDirectorUpdated(Director director) {
+        directors.invalidate();
+    }
+
+    @Override
+    public void onDirectorDeleted(int directorId) {
+        directors.invalidate();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindSnapshot(registry, "genres", genres);
+        bindSnapshot(registry, "ratings", ratings);
+        bindSnapshot(registry, "directors", directors);
+    }
+
+    private static void bindSnapshot(MeterRegistry registry, String name, ReferenceSnapshot<?> snapshot) {
+        bindCounter(registry, name, "hit", snapshot, ReferenceSnapshot::getHits);
+        bindCounter(registry, name, "miss", snapshot, ReferenceSnapshot::getMisses);
+    }
+
+    private static void bindCounter(MeterRegistry registry, String name, String result,
+                                    ReferenceSnapshot<?> snapshot, ToDoubleFunction<ReferenceSnapshot<?>> counter) {
+        FunctionCounter.builder(REQUESTS_METRIC, snapshot, counter)
+                .description("Reference data cache lookups")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static <T> List<T> findByIds(Map<Integer, T> items, Collection<Integer> ids) {
+        return ids.stream()
+                .distinct()
+                .map(items::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private static Genre copy(Genre genre) {
+        return new Genre(genre.getId(), genre.getName());
+    }
+
+    private static Mpa copy(Mpa rating) {
+        return new Mpa(rating.getId(), rating.getName());
+    }
+
+    private static Director copy(Director director) {
+        return new Director(director.getId(), director.getName());
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Лениво загружаемый неизменяемый снимок справочника, упорядоченный по id.
+ * Загрузка и сброс выполняются под одной блокировкой, чтобы загрузка, начатая до сброса,
+ * не оставила в кэше устаревший снимок.
+ */
+class ReferenceSnapshot<T> {
+    private final Supplier<List<T>> loader;
+    private final Function<T, Integer> idExtractor;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Map<Integer, T> snapshot;
+
+    ReferenceSnapshot(Supplier<List<T>> loader, Function<T, Integer> idExtractor) {
+        this.loader = loader;
+        this.idExtractor = idExtractor;
+    }
+
+    Map<Integer, T> get() {
+        Map<Integer, T> current = snapshot;
+        if (current != null) {
+            hits.increment();
+            return current;
+        }
+        return load();
+    }
+
+    synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    private synchronized Map<Integer, T> load() {
+        if (snapshot != null) {
+            hits.increment();
+            return snapshot;
+        }
+        misses.increment();
+        Map<Integer, T> loaded = new LinkedHashMap<>();
+        loader.get().stream()
+                .sorted((first, second) -> Integer.compare(idExtractor.apply(first), idExtractor.apply(second)))
+                .forEach(item -> loaded.put(idExtractor.apply(item), item));
+        snapshot = Collections.unmodifiableMap(loaded);
+        return snapshot;
+    }
+}
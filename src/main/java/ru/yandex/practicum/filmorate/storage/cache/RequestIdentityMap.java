@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.FilmChangeListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Пользователи и фильмы, уже прочитанные при обработке текущего HTTP-запроса.
+ * Повторное чтение той же записи в пределах запроса не обращается к хранилищу, а проверка существования
+ * не загружает запись со связями. Записи хранятся в атрибутах запроса и исчезают вместе с ним;
+ * вне HTTP-запроса, например в фоновых потоках, каждое обращение идет в хранилище.
+ * Фильм вытесняется по уведомлениям об изменениях фильмов и лайков, пользователя вытесняет сервис пользователей.
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestIdentityMap implements FilmChangeListener {
+    private static final String ATTRIBUTE = RequestIdentityMap.class.getName();
+    private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+
+    public User getUser(int userId) {
+        return get(Entities::users, userId, userStorage::getUserById);
+    }
+
+    public Film getFilm(int filmId) {
+        return get(Entities::films, filmId, filmStorage::getFilmById);
+    }
+
+    public boolean existsUser(int userId) {
+        return exists(Entities::users, Entities::existingUsers, userId, userStorage::existsUserById);
+    }
+
+    public boolean existsFilm(int filmId) {
+        return exists(Entities::films, Entities::existingFilms, filmId, filmStorage::existsFilmById);
+    }
+
+    public void evictUser(int userId) {
+        currentEntities().ifPresent(entities -> {
+            entities.users().remove(userId);
+            entities.existingUsers().remove(userId);
+        });
+    }
+
+    public void evictFilm(int filmId) {
+        currentEntities().ifPresent(entities -> {
+            entities.films().remove(filmId);
+            entities.existingFilms().remove(filmId);
+        });
+    }
+
+    @Override
+    public void onFilmUpdated(Film film) {
+        evictFilm(film.getId());
+    }
+
+    @Override
+    public void onFilmDeleted(int filmId) {
+        evictFilm(filmId);
+    }
+
+    @Override
+    public void onLikeAdded(int filmId, int userId) {
+        evictFilm(filmId);
+    }
+
+    @Override
+    public void onLikeRemoved(int filmId, int userId) {
+        evictFilm(filmId);
+    }
+
+    // Отсутствующая запись запоминается как Optional.empty(), чтобы не искать ее повторно
+    private <T> T get(Function<Entities, Map<Integer, Optional<T>>> cache, int id, IntFunction<T> loader) {
+        Optional<Entities> entities = currentEntities();
+        if (entities.isEmpty()) {
+            return loader.apply(id);
+        }
+        return cache.apply(entities.get())
+                .computeIfAbsent(id, key -> Optional.ofNullable(loader.apply(key)))
+                .orElse(null);
+    }
+
+    private <T> boolean exists(Function<Entities, Map<Integer, Optional<T>>> cache,
+                               Function<Entities, Map<Integer, Boolean>> existing, int id, IntPredicate probe) {
+        Optional<Entities> entities = currentEntities();
+        if (entities.isEmpty()) {
+            return probe.test(id);
+        }
+        Optional<T> loaded = cache.apply(entities.get()).get(id);
+        if (loaded != null) {
+            return loaded.isPresent();
+        }
+        return existing.apply(entities.get()).computeIfAbsent(id, probe::test);
+    }
+
+    private static Optional<Entities> currentEntities() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Optional.empty();
+        }
+        Entities entities = (Entities) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (entities == null) {
+            entities = new Entities(new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>());
+            attributes.setAttribute(ATTRIBUTE, entities, RequestAttributes.SCOPE_REQUEST);
+        }
+        return Optional.of(entities);
+    }
+
+    private record Entities(Map<Integer, Optional<User>> users, Map<Integer, Optional<Film>> films,
+                            Map<Integer, Boolean> existingUsers, Map<Integer, Boolean> existingFilms) {
+    }
+}
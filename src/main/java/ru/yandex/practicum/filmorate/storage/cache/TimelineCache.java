@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.user.FeedDto;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кэш собранных лент друзей для пользователей, которые запрашивают их чаще остальных.
+ * Лента хранит последние события от новых к старым и живет ограниченное время: события друзей
+ * в ней не отслеживаются, поэтому устаревание ограничено временем жизни записи.
+ */
+@Component
+public class TimelineCache implements MeterBinder {
+    private final TimelineCacheProperties properties;
+    private final Map<Integer, Timeline> timelines;
+    private long hits;
+    private long misses;
+
+    public TimelineCache(TimelineCacheProperties properties) {
+        this.properties = properties;
+        this.timelines = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Timeline> eldest) {
+                return size() > properties.getMaxUsers();
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public int getDepth() {
+        return properties.getDepth();
+    }
+
+    /**
+     * Страница ленты из кэша либо null, если лента не собрана, устарела или в ней не хватает событий.
+     *
+     * @param count число событий, начиная с первого события с id меньше {@code beforeEventId}
+     */
+    public synchronized List<FeedDto> getPage(int userId, int beforeEventId, int count) {
+        Timeline timeline = timelines.get(userId);
+        if (timeline == null || System.nanoTime() - timeline.loadedAt > TimeUnit.MILLISECONDS.toNanos(properties.getTtlMs())) {
+            misses++;
+            return null;
+        }
+        int from = firstBefore(timeline.events, beforeEventId);
+        int to = Math.min(from + count, timeline.events.size());
+        // события за пределами собранной части ленты могут существовать, если лента собрана не целиком
+        if (to - from < count && !timeline.complete) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return List.copyOf(timeline.events.subList(from, to));
+    }
+
+    /**
+     * Сохраняет последние события ленты.
+     *
+     * @param complete true, если в ленте нет других событий, кроме переданных
+     */
+    public synchronized void put(int userId, List<FeedDto> events, boolean complete) {
+        timelines.put(userId, new Timeline(List.copyOf(events), complete, System.nanoTime()));
+    }
+
+    public synchronized void evict(int userId) {
+        timelines.remove(userId);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.timeline.cache.requests", this, TimelineCache::getHits)
+                .description("Friends timeline cache lookups")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("filmorate.timeline.cache.requests", this, TimelineCache::getMisses)
+                .description("Friends timeline cache lookups")
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    // события упорядочены по убыванию id, ищется первое событие с id меньше заданного
+    private static int firstBefore(List<FeedDto> events, int beforeEventId) {
+        int low = 0;
+        int high = events.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (events.get(middle).getEventId() >= beforeEventId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private record Timeline(List<FeedDto> events, boolean complete, long loadedAt) {
+    }
+}
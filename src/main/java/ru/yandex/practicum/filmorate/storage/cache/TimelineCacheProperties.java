@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.timeline.cache")
+public class TimelineCacheProperties {
+    // хранить собранные ленты друзей часто запрашивающих их пользователей
+    private boolean enabled = false;
+    // число пользователей, чьи ленты хранятся одновременно
+    private int maxUsers = 1000;
+    // время, в течение которого собранная лента считается актуальной
+    private long ttlMs = 5000;
+    // число последних событий, собираемых в ленту при промахе
+    private int depth = 200;
+}
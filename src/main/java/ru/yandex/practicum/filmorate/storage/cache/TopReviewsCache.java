@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.index.FilmChangeListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Самые полезные отзывы часто просматриваемых фильмов.
+ * Для фильма хранятся id и полезность не более чем {@code depth} лучших отзывов в порядке убывания полезности,
+ * при равенстве - по возрастанию id. Отзывы за пределами хранимой части всегда хуже последнего хранимого,
+ * поэтому при изменениях хранимая часть может только сокращаться или пополняться отзывами, обогнавшими последний.
+ * Сервис отзывов сообщает кэшу о создании и удалении отзывов и о каждом изменении полезности.
+ * Каждое изменение увеличивает счетчик фильма, поэтому отзывы, прочитанные из базы до изменения,
+ * не сохраняются поверх него. Полезность приходит абсолютным значением: если за время изменения реакции
+ * отзыв успел измениться еще раз, порядок значений неизвестен и отзывы фильма сбрасываются.
+ */
+@Component
+public class TopReviewsCache implements FilmChangeListener, MeterBinder {
+    private static final Comparator<ReviewScore> RANKING = Comparator.comparingInt(ReviewScore::useful).reversed()
+            .thenComparingInt(ReviewScore::reviewId);
+    private static final int STAMP_STRIPES = 1024;
+    private final TopReviewsCacheProperties properties;
+    private final Map<Integer, FilmReviews> films;
+    // счетчики изменений отзывов фильмов и полезности отдельных отзывов, разложенные по полосам
+    private final AtomicLongArray filmStamps = new AtomicLongArray(STAMP_STRIPES);
+    private final AtomicLongArray reviewStamps = new AtomicLongArray(STAMP_STRIPES);
+    private long hits;
+    private long misses;
+
+    public TopReviewsCache(TopReviewsCacheProperties properties) {
+        this.properties = properties;
+        this.films = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, FilmReviews> eldest) {
+                return size() > properties.getMaxFilms();
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public int getDepth() {
+        return properties.getDepth();
+    }
+
+    /**
+     * Id самых полезных отзывов фильма либо null, если отзывы фильма не загружены или их не хватает.
+     */
+    public synchronized List<Integer> getTop(int filmId, int count) {
+        FilmReviews filmReviews = films.get(filmId);
+        if (filmReviews == null || filmReviews.ranking.size() < count && !filmReviews.complete) {
+            misses++;
+            return null;
+        }
+        hits++;
+        List<Integer> reviewIds = new ArrayList<>(Math.min(count, filmReviews.ranking.size()));
+        Iterator<ReviewScore> iterator = filmReviews.ranking.iterator();
+        while (reviewIds.size() < count && iterator.hasNext()) {
+            reviewIds.add(iterator.next().reviewId());
+        }
+        return reviewIds;
+    }
+
+    /**
+     * Счетчик изменений отзывов фильма; снимается перед чтением отзывов из базы и передается в
+     * {@link #put(int, List, boolean, long)}.
+     */
+    public long stamp(int filmId) {
+        return filmStamps.get(stripe(filmId));
+    }
+
+    /**
+     * Счетчик изменений полезности отзыва; снимается перед изменением реакции и передается в
+     * {@link #onUsefulChanged(int, int, int, long)}.
+     */
+    public long reviewStamp(int reviewId) {
+        return reviewStamps.get(stripe(reviewId));
+    }
+
+    /**
+     * Сохраняет самые полезные отзывы фильма, если после снятия счетчика они не менялись.
+     *
+     * @param reviews отзывы в порядке убывания полезности
+     * @param complete true, если других отзывов у фильма нет
+     */
+    public synchronized void put(int filmId, List<Review> reviews, boolean complete, long stamp) {
+        if (filmStamps.get(stripe(filmId)) != stamp) {
+            return;
+        }
+        FilmReviews filmReviews = new FilmReviews(complete && reviews.size() <= properties.getDepth());
+        reviews.stream()
+                .limit(properties.getDepth())
+                .forEach(review -> filmReviews.add(new ReviewScore(review.getId(), review.getUseful())));
+        films.put(filmId, filmReviews);
+    }
+
+    public synchronized void onReviewCreated(Review review) {
+        filmStamps.incrementAndGet(stripe(review.getFilmId()));
+        FilmReviews filmReviews = films.get(review.getFilmId());
+        if (filmReviews == null) {
+            return;
+        }
+        ReviewScore score = new ReviewScore(review.getId(), review.getUseful());
+        // отзыв, не обогнавший последний хранимый, остается за пределами хранимой части
+        if (filmReviews.complete || filmReviews.ranksBeforeLast(score)) {
+            filmReviews.add(score);
+            trim(filmReviews);
+        }
+    }
+
+    public synchronized void onReviewDeleted(int filmId, int reviewId) {
+        filmStamps.incrementAndGet(stripe(filmId));
+        reviewStamps.incrementAndGet(stripe(reviewId));
+        FilmReviews filmReviews = films.get(filmId);
+        if (filmReviews != null) {
+            filmReviews.remove(reviewId);
+        }
+    }
+
+    /**
+     * @param useful полезность отзыва сразу после изменения
+     * @param reviewStamp счетчик {@link #reviewStamp(int)}, снятый до изменения
+     */
+    public synchronized void onUsefulChanged(int filmId, int reviewId, int useful, long reviewStamp) {
+        filmStamps.incrementAndGet(stripe(filmId));
+        boolean ordered = reviewStamps.getAndIncrement(stripe(reviewId)) == reviewStamp;
+        FilmReviews filmReviews = films.get(filmId);
+        if (filmReviews == null) {
+            return;
+        }
+        if (!ordered) {
+            // параллельное изменение того же отзыва могло сообщить более новое значение раньше этого
+            films.remove(filmId);
+            return;
+        }
+        ReviewScore score = new ReviewScore(reviewId, useful);
+        boolean stored = filmReviews.remove(reviewId);
+        if (filmReviews.complete || filmReviews.ranksBeforeLast(score)) {
+            filmReviews.add(score);
+            trim(filmReviews);
+        } else if (stored && filmReviews.ranking.isEmpty()) {
+            // единственный хранимый отзыв ушел вниз, положение остальных неизвестно
+            films.remove(filmId);
+        }
+    }
+
+    @Override
+    public synchronized void onFilmDeleted(int filmId) {
+        filmStamps.incrementAndGet(stripe(filmId));
+        films.remove(filmId);
+    }
+
+    // Отзывы удаляются каскадно вместе с пользователем, поэтому хранимые отзывы сбрасываются целиком
+    public synchronized void onUserDeleted() {
+        for (int stripe = 0; stripe < STAMP_STRIPES; stripe++) {
+            filmStamps.incrementAndGet(stripe);
+            reviewStamps.incrementAndGet(stripe);
+        }
+        films.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.reviews.top.cache.requests", this, TopReviewsCache::getHits)
+                .description("Top reviews cache lookups")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("filmorate.reviews.top.cache.requests", this, TopReviewsCache::getMisses)
+                .description("Top reviews cache lookups")
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    private void trim(FilmReviews filmReviews) {
+        while (filmReviews.ranking.size() > properties.getDepth()) {
+            filmReviews.usefulById.remove(filmReviews.ranking.pollLast().reviewId());
+            filmReviews.complete = false;
+        }
+    }
+
+    private static int stripe(int id) {
+        return id & (STAMP_STRIPES - 1);
+    }
+
+    private record ReviewScore(int reviewId, int useful) {
+    }
+
+    // Хранимые отзывы фильма
+    private static class FilmReviews {
+        private final TreeSet<ReviewScore> ranking = new TreeSet<>(RANKING);
+        private final Map<Integer, Integer> usefulById = new HashMap<>();
+        private boolean complete;
+
+        FilmReviews(boolean complete) {
+            this.complete = complete;
+        }
+
+        void add(ReviewScore score) {
+            // отзыв мог попасть в прочитанные из базы раньше, чем пришло сообщение о его создании
+            remove(score.reviewId());
+            ranking.add(score);
+            usefulById.put(score.reviewId(), score.useful());
+        }
+
+        boolean remove(int reviewId) {
+            Integer useful = usefulById.remove(reviewId);
+            return useful != null && ranking.remove(new ReviewScore(reviewId, useful));
+        }
+
+        boolean ranksBeforeLast(ReviewScore score) {
+            return !ranking.isEmpty() && RANKING.compare(score, ranking.last()) < 0;
+        }
+    }
+}
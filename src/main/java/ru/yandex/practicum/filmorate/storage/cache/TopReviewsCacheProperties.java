@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.reviews.top-cache")
+public class TopReviewsCacheProperties {
+    // хранить самые полезные отзывы часто просматриваемых фильмов
+    private boolean enabled = true;
+    // число фильмов, чьи отзывы хранятся одновременно
+    private int maxFilms = 1000;
+    // число самых полезных отзывов, хранимых для фильма
+    private int depth = 100;
+}
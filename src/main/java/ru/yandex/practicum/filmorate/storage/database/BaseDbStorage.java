@@ -7,12 +7,9 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
-import ru.yandex.practicum.filmorate.model.FeedEntityType;
-import ru.yandex.practicum.filmorate.model.FeedEventOperation;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
-import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -74,10 +71,4 @@ abstract class BaseDbStorage<T> {
             return Optional.empty();
         }
     }
-
-    protected void addFeedEvent(int userId, int entityId, FeedEntityType eventType, FeedEventOperation operation) {
-        String query = "INSERT INTO FEED (\"TIMESTAMP\", USER_ID, ENTITY_ID, EVENT_TYPE, OPERATION) " +
-                "VALUES(?, ?, ?, ?, ?)";
-        insert(query, LocalDateTime.now(), userId, entityId, eventType.toString(), operation.toString());
-    }
 }
@@ -0,0 +1,309 @@
+package ru.yandex.practicum.filmorate.storage.database;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.FeedEntityType;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventOperation;
+import ru.yandex.practicum.filmorate.storage.buffer.FeedPipelineProperties;
+import ru.yandex.practicum.filmorate.storage.buffer.FeedRingBuffer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Запись событий ленты.
+ * В режиме SYNC событие вставляется в транзакции операции. В режиме ASYNC события после фиксации транзакции
+ * попадают в кольцевой буфер, откуда их пакетами записывает один фоновый поток; порядок записи совпадает
+ * с порядком публикации, поэтому события каждого пользователя получают возрастающие EVENT_ID.
+ * Неудачная запись пакета повторяется, пока не пройдет; следующие события ждут ее в буфере.
+ * Пакет, нарушающий ограничения базы, записывается по одному событию, нарушающие события пропускаются.
+ * Публикующие запросы ждут отстающую запись не дольше десятикратного допустимого отставания.
+ */
+@Slf4j
+@Repository
+public class FeedEventPipeline implements SmartLifecycle, MeterBinder {
+    // пользователь мог быть удален, пока событие ждало записи
+    private static final String ADD_FEED_EVENT_QUERY = """
+            INSERT INTO FEED ("TIMESTAMP", USER_ID, ENTITY_ID, EVENT_TYPE, OPERATION)
+            SELECT ?, u.USER_ID, ?, ?, ?
+            FROM USERS u
+            WHERE u.USER_ID = ?
+            """;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BACKOFF_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MAX_RETRY_DELAY_MS = 5000;
+    // число попыток записи при остановке, когда ждать восстановления базы уже нельзя
+    private static final int STOP_WRITE_ATTEMPTS = 3;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final FeedPipelineProperties properties;
+    private final FeedRingBuffer<FeedEvent> ring;
+    // последняя опубликованная позиция каждого пользователя, чьи события еще не записаны
+    private final Map<Integer, Long> pendingByUser = new ConcurrentHashMap<>();
+    // все позиции меньше этой уже записаны
+    private volatile long persistedPosition;
+    // пакет, взятый из буфера и еще не записанный; меняется только внутри drain
+    private final List<FeedEvent> batch = new ArrayList<>();
+    private long batchStart;
+    private volatile long lastProgressNanos = System.nanoTime();
+    private volatile boolean running;
+    private volatile Thread writer;
+
+    public FeedEventPipeline(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                             FeedPipelineProperties properties) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.ring = new FeedRingBuffer<>(properties.getCapacity());
+    }
+
+    public void publish(int userId, int entityId, FeedEntityType eventType, FeedEventOperation operation) {
+        publishAll(List.of(new FeedEvent(userId, entityId, eventType, operation, LocalDateTime.now())));
+    }
+
+    public void publishAll(List<FeedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        if (properties.getDurability() == FeedPipelineProperties.Durability.SYNC || writer == null) {
+            write(events);
+        } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // события откатанной операции не должны попасть в ленту
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(events);
+                }
+            });
+        } else {
+            enqueue(events);
+        }
+    }
+
+    /**
+     * Дожидается записи уже опубликованных событий пользователя, чтобы чтение ленты их увидело.
+     */
+    public void awaitUserEvents(int userId) {
+        Long position = pendingByUser.get(userId);
+        if (position == null) {
+            return;
+        }
+        if (!awaitPersisted(position, TimeUnit.MILLISECONDS.toNanos(properties.getMaxLagMs()) * 10)) {
+            log.warn("Feed events of user {} are still not persisted, feed may be incomplete", userId);
+            return;
+        }
+        pendingByUser.remove(userId, position);
+    }
+
+    public int getQueueDepth() {
+        return ring.size();
+    }
+
+    @Override
+    public void start() {
+        if (properties.getDurability() != FeedPipelineProperties.Durability.ASYNC || running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::writeLoop, "feed-writer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+        log.info("Asynchronous feed pipeline started: capacity {}, batch size {}, max lag {} ms",
+                ring.capacity(), properties.getBatchSize(), properties.getMaxLagMs());
+    }
+
+    @Override
+    public void stop() {
+        Thread thread = writer;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(properties.getMaxLagMs() * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        // события, опубликованные во время остановки, записываются вызывающим потоком
+        drain();
+        log.info("Feed pipeline stopped, pending events flushed");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // останавливается после буфера отложенной записи лайков, который публикует события при сбросе
+        return -1;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.feed.pipeline.depth", this, FeedEventPipeline::getQueueDepth)
+                .description("Feed events waiting to be written to the database")
+                .register(registry);
+    }
+
+    private void enqueue(List<FeedEvent> events) {
+        long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(properties.getMaxLagMs()) * 10;
+        long position = -1;
+        for (FeedEvent event : events) {
+            long deadline = System.nanoTime() + maxWaitNanos;
+            long offered;
+            while ((offered = ring.offer(event)) < 0) {
+                // буфер заполнен: производитель ждет, пока фоновый поток освободит место
+                Thread thread = writer;
+                if (thread == null) {
+                    drain();
+                } else if (System.nanoTime() > deadline) {
+                    break;
+                } else {
+                    LockSupport.unpark(thread);
+                    LockSupport.parkNanos(BACKOFF_PARK_NANOS);
+                }
+            }
+            if (offered < 0) {
+                // запись стоит, а операция уже зафиксирована: ее запрос не должен ждать бесконечно
+                log.error("Feed pipeline is full for {} ms, event {} is dropped",
+                        TimeUnit.NANOSECONDS.toMillis(maxWaitNanos), event);
+                continue;
+            }
+            position = offered;
+            pendingByUser.merge(event.getUserId(), position, Math::max);
+        }
+        LockSupport.unpark(writer);
+
+        long stalledNanos = System.nanoTime() - lastProgressNanos;
+        if (position >= 0 && persistedPosition <= position
+                && stalledNanos > TimeUnit.MILLISECONDS.toNanos(properties.getMaxLagMs())) {
+            // запись отстала больше допустимого: запрос дожидается записи, не давая отставанию расти
+            if (!awaitPersisted(position, maxWaitNanos)) {
+                log.warn("Feed events are still not persisted after {} ms, continuing without waiting",
+                        TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+            }
+        }
+    }
+
+    private boolean awaitPersisted(long position, long timeoutNanos) {
+        long deadline = System.nanoTime() + Math.min(timeoutNanos, Long.MAX_VALUE / 2);
+        while (persistedPosition <= position) {
+            Thread thread = writer;
+            if (thread == null) {
+                return persistedPosition > position;
+            }
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(BACKOFF_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private void writeLoop() {
+        while (running) {
+            if (drain() == 0) {
+                lastProgressNanos = System.nanoTime();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        drain();
+    }
+
+    // Записывает все опубликованные события пакетами; вызывается только одним потоком за раз.
+    // Записанная позиция сдвигается только после записи пакета, незаписанный пакет остается первым в очереди
+    private synchronized int drain() {
+        int total = 0;
+        while (true) {
+            if (batch.isEmpty()) {
+                batchStart = ring.getHead();
+                if (ring.drainTo(batch, properties.getBatchSize()) == 0) {
+                    return total;
+                }
+            }
+            long start = batchStart;
+            long end = batchStart + batch.size();
+            if (!writeWithRetry()) {
+                log.error("Feed pipeline is stopping, {} feed events are not written", batch.size() + ring.size());
+                return total;
+            }
+            persistedPosition = end;
+            lastProgressNanos = System.nanoTime();
+            for (int i = 0; i < batch.size(); i++) {
+                pendingByUser.remove(batch.get(i).getUserId(), batchStart + i);
+            }
+            total += (int) (end - start);
+            batch.clear();
+        }
+    }
+
+    // Повторяет запись пакета с растущей до предела паузой; при остановке число попыток ограничено
+    private boolean writeWithRetry() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> write(batch));
+                } catch (DataIntegrityViolationException e) {
+                    // повтор такого пакета не поможет: события записываются по одному, нарушающие пропускаются
+                    log.warn("Feed batch of {} events violates constraints, writing events one by one", batch.size(), e);
+                    writeOneByOne();
+                }
+                return true;
+            } catch (RuntimeException e) {
+                if (!running && attempt >= STOP_WRITE_ATTEMPTS) {
+                    return false;
+                }
+                log.warn("Failed to write {} feed events, attempt {}, will retry", batch.size(), attempt, e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.min(100L * attempt, MAX_RETRY_DELAY_MS)));
+            }
+        }
+    }
+
+    // Записанные и пропущенные события сразу убираются из пакета, поэтому повтор после сбоя их не дублирует
+    private void writeOneByOne() {
+        while (!batch.isEmpty()) {
+            FeedEvent event = batch.getFirst();
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(List.of(event)));
+            } catch (DataIntegrityViolationException e) {
+                log.error("Feed event {} violates constraints and is skipped", event, e);
+            }
+            batch.removeFirst();
+            pendingByUser.remove(event.getUserId(), batchStart);
+            batchStart++;
+            persistedPosition = batchStart;
+        }
+    }
+
+    private void write(List<FeedEvent> events) {
+        jdbc.batchUpdate(ADD_FEED_EVENT_QUERY, events, properties.getBatchSize(), (ps, event) -> {
+            ps.setObject(1, event.getTimestamp());
+            ps.setInt(2, event.getEntityId());
+            ps.setString(3, event.getEventType().toString());
+            ps.setString(4, event.getOperation().toString());
+            ps.setInt(5, event.getUserId());
+        });
+    }
+}
@@ -2,19 +2,27 @@ package ru.yandex.practicum.filmorate.storage.database;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.model.*;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
 import java.util.*;
 
 @Slf4j
@@ -30,47 +38,28 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
                 f.RELEASE_DATE,
                 f.DURATION,
                 f.RATING_ID,
-                r.NAME as RATING_NAME,
-                g.GENRE_ID,
-                g.NAME AS GENRE,
-                fl.USER_ID AS "LIKE",
-                d.DIRECTOR_ID,
-                d.NAME AS DIRECTOR
+                r.NAME as RATING_NAME
             FROM FILM f
             """;
     private static final String JOINS = """
             LEFT JOIN RATING r ON f.RATING_ID = r.RATING_ID
-            LEFT JOIN FILM_GENRE fg ON f.FILM_ID = fg.FILM_ID
-            LEFT JOIN GENRE g ON fg.GENRE_ID = g.GENRE_ID
-            LEFT JOIN FILM_LIKE fl ON f.FILM_ID = fl.FILM_ID
-            LEFT JOIN FILM_DIRECTOR fd ON f.FILM_ID = fd.FILM_ID
-            LEFT JOIN DIRECTOR d ON fd.DIRECTOR_ID = d.DIRECTOR_ID
             """;
-    private static final String FIND_ALL_FILMS_QUERY = BASE_QUERY + JOINS;
+    private static final String FIND_ALL_FILMS_QUERY = BASE_QUERY + JOINS +
+            "ORDER BY f.FILM_ID";
     private static final String FIND_FILM_BY_ID_QUERY = BASE_QUERY + JOINS +
             "WHERE f.FILM_ID = ?";
+    private static final String FILM_EXISTS_QUERY = """
+            SELECT EXISTS(SELECT 1 FROM FILM WHERE FILM_ID = ?)
+            """;
+    private static final String FIND_EXISTING_FILM_IDS_QUERY = """
+            SELECT FILM_ID
+            FROM FILM
+            WHERE FILM_ID IN (:param)
+            """;
+    private static final String FIND_FILMS_PAGE_QUERY = BASE_QUERY + JOINS +
+            "WHERE f.FILM_ID > ? ORDER BY f.FILM_ID LIMIT ?";
     private static final String FIND_FILMS_BY_IDS_QUERY = BASE_QUERY + JOINS +
             "WHERE f.FILM_ID IN (:param)";
-    private static final String RECOMMENDED_QUERY = """
-            WITH recommended_film_ids(FILM_ID) as (
-                SELECT FILM_ID --поиск фильмов пользователя с наибольшими пересечениями по лайкам
-                FROM FILM_LIKE
-                WHERE USER_ID = ( --поиск пользователя с наибольшими пересечениями по лайкам
-                                  SELECT fl2.USER_ID
-                                  FROM (SELECT * FROM FILM_LIKE WHERE USER_ID = ?) fl1
-                                  JOIN (SELECT * FROM FILM_LIKE WHERE USER_ID != ?) fl2
-                                  USING (film_id)
-                                  GROUP BY fl2.USER_ID
-                                  ORDER BY count(*) DESC
-                                  LIMIT 1
-                                 )
-                EXCEPT --исключение общих фильмов
-                SELECT FILM_ID
-                FROM FILM_LIKE
-                WHERE USER_ID = (?)
-            )""" +
-            BASE_QUERY + JOINS +
-            "JOIN recommended_film_ids USING(FILM_ID)";
     private static final String INSERT_FILM_QUERY = """
             INSERT INTO FILM(NAME, DESCRIPTION, RELEASE_DATE, DURATION, RATING_ID)
             VALUES (?, ?, ?, ?, ?)
@@ -80,18 +69,6 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
             SET NAME = ?, DESCRIPTION = ?, RELEASE_DATE = ?, DURATION = ?, RATING_ID = ?
             WHERE FILM_ID = ?
             """;
-    private static final String MOST_POPULAR_FILMS_QUERY = BASE_QUERY + """
-            JOIN (
-                    SELECT
-                        f1.FILM_ID,
-                        COUNT(USER_ID) AS likes_count
-                    FROM FILM f1 LEFT JOIN FILM_LIKE l1 using(FILM_ID)
-                    GROUP BY f1.FILM_ID
-                    ORDER BY count(USER_ID) DESC LIMIT ?
-                  ) p
-            ON (f.FILM_ID = p.FILM_ID)""" +
-            JOINS +
-            "ORDER BY p.likes_count DESC";
     private static final String ALL_GENRES_QUERY = """
             SELECT *
             FROM GENRE
@@ -122,15 +99,25 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
             FROM RATING
             WHERE RATING_ID = ?
             """;
-    private static final String FILM_LIKES_QUERY = """
-            SELECT
-                USER_ID
-            FROM FILM_LIKE
-            WHERE FILM_ID = ?
+    private static final String LIKE_EXISTS_QUERY = """
+            SELECT EXISTS(SELECT 1 FROM FILM_LIKE WHERE FILM_ID = ? AND USER_ID = ?)
             """;
     private static final String ADD_LIKE_QUERY = """
-            MERGE INTO FILM_LIKE (FILM_ID, USER_ID) KEY (FILM_ID, USER_ID)
-            VALUES (?, ?)
+            INSERT INTO FILM_LIKE (FILM_ID, USER_ID)
+            SELECT f.FILM_ID, u.USER_ID
+            FROM FILM f, USERS u
+            WHERE f.FILM_ID = ? AND u.USER_ID = ?
+            AND NOT EXISTS (SELECT 1 FROM FILM_LIKE fl WHERE fl.FILM_ID = f.FILM_ID AND fl.USER_ID = u.USER_ID)
+            """;
+    private static final String UPDATE_LIKES_COUNT_QUERY = """
+            UPDATE FILM
+            SET LIKES_COUNT = LIKES_COUNT + ?
+            WHERE FILM_ID = ?
+            """;
+    private static final String REBUILD_LIKES_COUNT_QUERY = """
+            UPDATE FILM f
+            SET LIKES_COUNT = (SELECT COUNT(*) FROM FILM_LIKE fl WHERE fl.FILM_ID = f.FILM_ID)
+            WHERE LIKES_COUNT <> (SELECT COUNT(*) FROM FILM_LIKE fl WHERE fl.FILM_ID = f.FILM_ID)
             """;
     private static final String DELETE_LIKE_QUERY = """
             DELETE
@@ -157,51 +144,74 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
             FROM FILM_DIRECTOR
             WHERE FILM_ID = ?
             """;
-    private static final String GET_FILM_DIRECTORS_QUERY = """
-            SELECT d.*
-            FROM DIRECTOR d
-            JOIN FILM_DIRECTOR fd ON d.DIRECTOR_ID = fd.DIRECTOR_ID
-            WHERE fd.FILM_ID = ?
-            """;
     private static final String FIND_DIRECTORS_BY_IDS_QUERY = """
             SELECT *
             FROM DIRECTOR
             WHERE DIRECTOR_ID IN (:param)
             """;
     private static final String GET_FILMS_BY_DIRECTOR_QUERY = BASE_QUERY + JOINS +
-            "WHERE fd.DIRECTOR_ID = ?";
-    private static final String POPULAR_FILMS_BY_GENRE_AND_YEAR_QUERY = BASE_QUERY + """
-            JOIN (
-                SELECT f2.FILM_ID, COUNT(DISTINCT fl2.USER_ID) as likes_count
-                FROM FILM f2
-                LEFT JOIN FILM_GENRE fg2 ON f2.FILM_ID = fg2.FILM_ID
-                LEFT JOIN FILM_LIKE fl2 ON f2.FILM_ID = fl2.FILM_ID
-                WHERE (CAST(? AS INT) IS NULL OR fg2.GENRE_ID = CAST(? AS INT))
-                AND (CAST(? AS INT) IS NULL OR YEAR(f2.RELEASE_DATE) = CAST(? AS INT))
-                GROUP BY f2.FILM_ID
-                ORDER BY COUNT(DISTINCT fl2.USER_ID) DESC, f2.FILM_ID ASC
-                LIMIT ?
-            ) top_films ON f.FILM_ID = top_films.FILM_ID
-            """ +
-            JOINS +
-            "ORDER BY top_films.likes_count DESC, f.FILM_ID ASC";
+            "WHERE f.FILM_ID IN (SELECT FILM_ID FROM FILM_DIRECTOR WHERE DIRECTOR_ID = ?)";
     private static final String COMMON_FILMS_QUERY = BASE_QUERY + """
             JOIN FILM_LIKE fl1 ON f.FILM_ID = fl1.FILM_ID AND fl1.USER_ID = ?
-            JOIN FILM_LIKE fl2 ON f.FILM_ID = fl2.FILM_ID AND fl2.USER_ID = ?""" +
+            JOIN FILM_LIKE fl2 ON f.FILM_ID = fl2.FILM_ID AND fl2.USER_ID = ?
+            """ +
             JOINS +
-            "ORDER BY (SELECT COUNT(*) FROM FILM_LIKE WHERE FILM_ID = f.FILM_ID) DESC, f.FILM_ID ASC";
+            "ORDER BY f.LIKES_COUNT DESC, f.FILM_ID ASC";
+    private static final String GENRES_BY_FILM_IDS_QUERY = """
+            SELECT
+                fg.FILM_ID,
+                g.GENRE_ID,
+                g.NAME
+            FROM FILM_GENRE fg
+            JOIN GENRE g ON fg.GENRE_ID = g.GENRE_ID
+            WHERE fg.FILM_ID IN (:param)
+            ORDER BY fg.FILM_ID, g.GENRE_ID
+            """;
+    private static final String DIRECTORS_BY_FILM_IDS_QUERY = """
+            SELECT
+                fd.FILM_ID,
+                d.DIRECTOR_ID,
+                d.NAME
+            FROM FILM_DIRECTOR fd
+            JOIN DIRECTOR d ON fd.DIRECTOR_ID = d.DIRECTOR_ID
+            WHERE fd.FILM_ID IN (:param)
+            """;
+    private static final String LIKES_BY_FILM_IDS_QUERY = """
+            SELECT
+                FILM_ID,
+                USER_ID
+            FROM FILM_LIKE
+            WHERE FILM_ID IN (:param)
+            """;
+    private static final String LIKES_COUNTS_QUERY = """
+            SELECT
+                FILM_ID,
+                LIKES_COUNT
+            FROM FILM
+            """;
+    // ограничение размера списка IN (...) в запросах догрузки связей фильмов
+    private static final int HYDRATION_BATCH_SIZE = 1000;
+    // число строк в одном пакете JDBC при пакетной записи лайков
+    private static final int WRITE_BATCH_SIZE = 500;
     private final RowMapper<Genre> genreRowMapper;
     private final RowMapper<Mpa> mpaRowMapper;
     private final RowMapper<Director> directorRowMapper;
+    private final FilmCache filmCache;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final FeedEventPipeline feedEventPipeline;
     NamedParameterJdbcTemplate namedJdbc = new NamedParameterJdbcTemplate(jdbc);
 
     public FilmDbStorage(JdbcTemplate jdbc, RowMapper<Film> mapper,
                          RowMapper<Genre> genreRowMapper, RowMapper<Mpa> mpaRowMapper,
-                         RowMapper<Director> directorRowMapper) {
+                         RowMapper<Director> directorRowMapper, FilmCache filmCache,
+                         LikeWriteBuffer likeWriteBuffer, FeedEventPipeline feedEventPipeline) {
         super(jdbc, mapper);
         this.genreRowMapper = genreRowMapper;
         this.mpaRowMapper = mpaRowMapper;
         this.directorRowMapper = directorRowMapper;
+        this.filmCache = filmCache;
+        this.likeWriteBuffer = likeWriteBuffer;
+        this.feedEventPipeline = feedEventPipeline;
     }
 
     @Override
@@ -220,30 +230,42 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
 
         addFilmDirectors(id, film.getDirectors().stream().toList());
 
+        filmCache.put(film);
         return film;
     }
 
     @Override
     public List<Film> getAllFilms() {
-        List<Film> rawFilms = findMany(FIND_ALL_FILMS_QUERY);
+        return findFilms(FIND_ALL_FILMS_QUERY);
+    }
 
-        return groupValues(rawFilms);
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return findFilms(FIND_FILMS_PAGE_QUERY, afterId, limit);
     }
 
     @Override
     public Film getFilmById(int filmId) {
-        List<Film> rawFilms = findMany(FIND_FILM_BY_ID_QUERY, filmId);
-        if (rawFilms.isEmpty()) {
-            return null;
+        Film film = filmCache.get(filmId);
+        if (film == null) {
+            long stamp = filmCache.stamp(filmId);
+            List<Film> films = hydrate(findMany(FIND_FILM_BY_ID_QUERY, filmId));
+            if (films.isEmpty()) {
+                return null;
+            }
+            film = films.getFirst();
+            filmCache.load(film, stamp);
         }
-        Film film = groupValues(rawFilms).getFirst();
-
-        List<Director> directors = getFilmDirectors(filmId);
-        film.setDirectors(new HashSet<>(directors));
-
+        likeWriteBuffer.applyPendingLikes(film);
         return film;
     }
 
+    @Override
+    public boolean existsFilmById(int filmId) {
+        return filmCache.contains(filmId)
+                || Boolean.TRUE.equals(jdbc.queryForObject(FILM_EXISTS_QUERY, Boolean.class, filmId));
+    }
+
     @Override
     public Film updateFilm(Film newFilm) {
         update(
@@ -266,6 +288,8 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
             addFilmDirectors(newFilm.getId(), newFilm.getDirectors().stream().toList());
         }
 
+        // лайки могли измениться после чтения фильма сервисом, поэтому фильм перечитывается при следующем обращении
+        filmCache.evict(newFilm.getId());
         return newFilm;
     }
 
@@ -334,31 +358,117 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
     }
 
     @Override
-    public List<Integer> getFilmLikes(int filmId) {
-        return jdbc.queryForList(FILM_LIKES_QUERY, Integer.class, filmId);
+    public boolean hasLike(int filmId, int userId) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(LIKE_EXISTS_QUERY, Boolean.class, filmId, userId));
     }
 
     @Override
-    public void addLike(int filmId, int userId) {
-        update(ADD_LIKE_QUERY, filmId, userId);
-        addFeedEvent(userId, filmId, FeedEntityType.LIKE, FeedEventOperation.ADD);
+    @Transactional
+    public boolean addLike(int filmId, int userId) {
+        boolean added;
+        try {
+            added = jdbc.update(ADD_LIKE_QUERY, filmId, userId) > 0;
+        } catch (DuplicateKeyException ignored) {
+            // тот же лайк параллельно добавлен другим запросом
+            added = false;
+        }
+        if (added) {
+            update(UPDATE_LIKES_COUNT_QUERY, 1, filmId);
+            filmCache.addLike(filmId, userId);
+            feedEventPipeline.publish(userId, filmId, FeedEntityType.LIKE, FeedEventOperation.ADD);
+        }
+        return added;
     }
 
     @Override
-    public void deleteLike(int filmId, int userId) {
-        update(DELETE_LIKE_QUERY, filmId, userId);
-        addFeedEvent(userId, filmId, FeedEntityType.LIKE, FeedEventOperation.REMOVE);
+    @Transactional
+    public boolean deleteLike(int filmId, int userId) {
+        if (!delete(DELETE_LIKE_QUERY, filmId, userId)) {
+            return false;
+        }
+        update(UPDATE_LIKES_COUNT_QUERY, -1, filmId);
+        filmCache.removeLike(filmId, userId);
+        feedEventPipeline.publish(userId, filmId, FeedEntityType.LIKE, FeedEventOperation.REMOVE);
+        return true;
     }
 
     @Override
-    public List<Film> getMostPopular(int count) {
-        List<Film> rawFilms = findMany(MOST_POPULAR_FILMS_QUERY, count);
-        if (rawFilms.isEmpty()) {
-            return rawFilms;
-        }
-        return groupValues(rawFilms).stream()
-                .sorted(Comparator.comparing(Film::getLikesCount).reversed())
+    @Transactional
+    public Set<FilmLike> applyLikes(List<FilmLike> likesToAdd, List<FilmLike> likesToDelete) {
+        Set<FilmLike> added = executeLikeBatch(ADD_LIKE_QUERY, likesToAdd);
+        Set<FilmLike> deleted = executeLikeBatch(DELETE_LIKE_QUERY, likesToDelete);
+        applyLikeCountChanges(added, deleted);
+
+        addLikeFeedEvents(added, FeedEventOperation.ADD);
+        addLikeFeedEvents(deleted, FeedEventOperation.REMOVE);
+
+        Set<FilmLike> applied = new HashSet<>(added);
+        applied.addAll(deleted);
+        return applied;
+    }
+
+    @Override
+    @Transactional
+    public void flushLikes(List<FilmLike> likesToAdd, List<FilmLike> likesToDelete, List<LikeEvent> events) {
+        Set<FilmLike> added = executeLikeBatch(ADD_LIKE_QUERY, likesToAdd);
+        Set<FilmLike> deleted = executeLikeBatch(DELETE_LIKE_QUERY, likesToDelete);
+        applyLikeCountChanges(added, deleted);
+
+        // в ленту попадают все принятые буфером операции, включая схлопнутые, со временем их поступления
+        feedEventPipeline.publishAll(events.stream()
+                .map(event -> new FeedEvent(event.getUserId(), event.getFilmId(), FeedEntityType.LIKE,
+                        event.getOperation() == LikeOperation.ADD ? FeedEventOperation.ADD : FeedEventOperation.REMOVE,
+                        event.getTimestamp()))
+                .toList());
+    }
+
+    // Обновляет счетчики лайков и кеш фильмов по фактически добавленным и удаленным лайкам.
+    private void applyLikeCountChanges(Set<FilmLike> added, Set<FilmLike> deleted) {
+        Map<Integer, Integer> likesCountDeltas = new HashMap<>();
+        added.forEach(like -> likesCountDeltas.merge(like.getFilmId(), 1, Integer::sum));
+        deleted.forEach(like -> likesCountDeltas.merge(like.getFilmId(), -1, Integer::sum));
+        List<Map.Entry<Integer, Integer>> deltas = likesCountDeltas.entrySet().stream()
+                .filter(delta -> delta.getValue() != 0)
                 .toList();
+        if (!deltas.isEmpty()) {
+            jdbc.batchUpdate(UPDATE_LIKES_COUNT_QUERY, deltas, WRITE_BATCH_SIZE, (ps, delta) -> {
+                ps.setInt(1, delta.getValue());
+                ps.setInt(2, delta.getKey());
+            });
+        }
+
+        added.forEach(like -> filmCache.addLike(like.getFilmId(), like.getUserId()));
+        deleted.forEach(like -> filmCache.removeLike(like.getFilmId(), like.getUserId()));
+    }
+
+    @Override
+    public Set<Integer> getExistingFilmIds(Collection<Integer> filmIds) {
+        Set<Integer> existingIds = new HashSet<>();
+        List<Integer> ids = new ArrayList<>(filmIds);
+        for (int from = 0; from < ids.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, ids.size()));
+            namedJdbc.query(FIND_EXISTING_FILM_IDS_QUERY, Map.of("param", batch),
+                    (RowCallbackHandler) rs -> existingIds.add(rs.getInt("FILM_ID")));
+        }
+        return existingIds;
+    }
+
+    @Override
+    @Transactional
+    public int rebuildLikesCounts() {
+        int repaired = jdbc.update(REBUILD_LIKES_COUNT_QUERY);
+        if (repaired > 0) {
+            log.warn("Likes counter repaired for {} films", repaired);
+        }
+        return repaired;
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikesCounts() {
+        Map<Integer, Integer> likesCounts = new HashMap<>();
+        jdbc.query(LIKES_COUNTS_QUERY, (RowCallbackHandler) rs ->
+                likesCounts.put(rs.getInt("FILM_ID"), rs.getInt("LIKES_COUNT")));
+        return likesCounts;
     }
 
     @Override
@@ -381,14 +491,12 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
 
     @Override
     public List<Film> getFilmsByDirector(int directorId, String sortBy) {
-        List<Film> rawFilms = findMany(GET_FILMS_BY_DIRECTOR_QUERY, directorId);
+        List<Film> films = findFilms(GET_FILMS_BY_DIRECTOR_QUERY, directorId);
 
-        if (rawFilms.isEmpty()) {
+        if (films.isEmpty()) {
             return Collections.emptyList();
         }
 
-        List<Film> films = groupValues(rawFilms);
-
         if ("likes".equalsIgnoreCase(sortBy)) {
             return films.stream().sorted(Comparator.comparing(Film::getLikesCount).reversed()).toList();
         } else if ("year".equalsIgnoreCase(sortBy)) {
@@ -399,112 +507,145 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
         throw new InternalServerException("Произошла непредвиденная ошибка");
     }
 
-    @Override
-    public List<Director> getFilmDirectors(int filmId) {
-        return jdbc.query(GET_FILM_DIRECTORS_QUERY, directorRowMapper, filmId);
-    }
-
     @Override
     public boolean deleteFilmById(int filmId) {
         int rowsAffected = jdbc.update(DELETE_FILM_QUERY, filmId);
+        filmCache.evict(filmId);
         return rowsAffected > 0;
     }
 
-    @Override
-    public List<Film> getPopularFilmsByGenreAndYear(Integer count, Integer genreId, Integer year) {
-        int limit = (count != null && count > 0) ? count : 10;
-
-        List<Film> rawFilms = findMany(POPULAR_FILMS_BY_GENRE_AND_YEAR_QUERY, genreId, genreId, year, year, limit);
-
-        return groupValues(rawFilms);
-    }
-
     @Override
     public List<Film> getCommonFilms(int userId, int friendId) {
-        List<Film> rawFilms = findMany(COMMON_FILMS_QUERY, userId, friendId);
+        return findFilms(COMMON_FILMS_QUERY, userId, friendId);
+    }
 
-        return groupValues(rawFilms);
+    private List<Film> findFilms(String query, Object... params) {
+        List<Film> films = hydrate(findMany(query, params));
+        films.forEach(likeWriteBuffer::applyPendingLikes);
+        return films;
     }
 
-    private List<Film> groupValues(List<Film> rawFilms) {
-        if (rawFilms.isEmpty()) {
+    // Догружает жанры, режиссеров и лайки отдельным запросом на каждую связь по списку id фильмов,
+    // чтобы не размножать строки фильма декартовым произведением LEFT JOIN'ов.
+    // Порядок фильмов из основного запроса сохраняется.
+    private List<Film> hydrate(List<Film> films) {
+        if (films.isEmpty()) {
             return Collections.emptyList();
         }
-        Map<Integer, Film> films = new LinkedHashMap<>();
-        for (Film film : rawFilms) {
-            films.compute(film.getId(), (id, flm) -> {
-                if (flm == null) {
-                    return film;
-                }
-                if (!film.getGenres().isEmpty()) {
-                    flm.getGenres().addAll(film.getGenres());
-                }
-                if (!film.getLikes().isEmpty()) {
-                    flm.getLikes().addAll(film.getLikes());
-                }
-                if (!film.getDirectors().isEmpty()) {
-                    flm.getDirectors().addAll(film.getDirectors());
-                }
-                return flm;
-            });
+        Map<Integer, Film> filmsById = new LinkedHashMap<>();
+        for (Film film : films) {
+            filmsById.putIfAbsent(film.getId(), film);
         }
-        return films.values().stream().toList();
-    }
 
-    @Override
-    public List<Film> searchFilms(String query, boolean searchByTitle, boolean searchByDirector) {
-        String searchQuery = buildSearchQuery(searchByTitle, searchByDirector);
-        String searchPattern = "%" + query.toLowerCase() + "%";
-
-        List<Integer> filmIds;
-        if (searchByTitle && searchByDirector) {
-            filmIds = jdbc.query(searchQuery, (rs, rowNum) -> rs.getInt("FILM_ID"), searchPattern, searchPattern);
-        } else {
-            filmIds = jdbc.query(searchQuery, (rs, rowNum) -> rs.getInt("FILM_ID"), searchPattern);
-        }
+        List<Integer> filmIds = new ArrayList<>(filmsById.keySet());
+        for (int from = 0; from < filmIds.size(); from += HYDRATION_BATCH_SIZE) {
+            Map<String, List<Integer>> params = Map.of("param",
+                    filmIds.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, filmIds.size())));
 
-        if (filmIds.isEmpty()) {
-            return Collections.emptyList();
+            RowCallbackHandler genreHandler = rs -> filmsById.get(rs.getInt("FILM_ID")).getGenres()
+                    .add(genreRowMapper.mapRow(rs, rs.getRow()));
+            namedJdbc.query(GENRES_BY_FILM_IDS_QUERY, params, genreHandler);
+
+            RowCallbackHandler directorHandler = rs -> filmsById.get(rs.getInt("FILM_ID")).getDirectors()
+                    .add(directorRowMapper.mapRow(rs, rs.getRow()));
+            namedJdbc.query(DIRECTORS_BY_FILM_IDS_QUERY, params, directorHandler);
+
+            RowCallbackHandler likeHandler = rs -> filmsById.get(rs.getInt("FILM_ID")).getLikes()
+                    .add(rs.getInt("USER_ID"));
+            namedJdbc.query(LIKES_BY_FILM_IDS_QUERY, params, likeHandler);
         }
 
-        return findFilmsByIds(filmIds).stream()
-                .sorted(Comparator.comparing(Film::getLikesCount).reversed())
-                .toList();
+        return filmsById.values().stream().toList();
     }
 
-    private String buildSearchQuery(boolean searchByTitle, boolean searchByDirector) {
-        String baseQuery = "SELECT DISTINCT f.FILM_ID FROM FILM f ";
-
-        if (searchByDirector) {
-            baseQuery += "LEFT JOIN FILM_DIRECTOR fd ON f.FILM_ID = fd.FILM_ID " +
-                    "LEFT JOIN DIRECTOR d ON fd.DIRECTOR_ID = d.DIRECTOR_ID ";
+    // Вызывается внутри транзакции applyLikes или flushLikes
+    private Set<FilmLike> executeLikeBatch(String query, List<FilmLike> likes) {
+        if (likes.isEmpty()) {
+            return Collections.emptySet();
         }
+        TransactionStatus status = TransactionAspectSupport.currentTransactionStatus();
+        Object savepoint = status.createSavepoint();
+        int[][] counts;
+        try {
+            counts = jdbc.batchUpdate(query, likes, WRITE_BATCH_SIZE, (ps, like) -> {
+                ps.setInt(1, like.getFilmId());
+                ps.setInt(2, like.getUserId());
+            });
+        } catch (DuplicateKeyException e) {
+            // тот же лайк параллельно добавлен другим запросом: пакет откатывается и повторяется построчно
+            status.rollbackToSavepoint(savepoint);
+            status.releaseSavepoint(savepoint);
+            return executeLikesOneByOne(query, likes);
+        }
+        status.releaseSavepoint(savepoint);
+
+        Set<FilmLike> changed = new HashSet<>();
+        int index = 0;
+        for (int[] batchCounts : counts) {
+            for (int count : batchCounts) {
+                if (count > 0) {
+                    changed.add(likes.get(index));
+                }
+                index++;
+            }
+        }
+        return changed;
+    }
 
-        if (searchByTitle && searchByDirector) {
-            baseQuery += "WHERE (LOWER(f.name) LIKE LOWER(?) OR LOWER(d.name) LIKE LOWER(?)) ";
-        } else if (searchByTitle) {
-            baseQuery += "WHERE LOWER(f.name) LIKE LOWER(?) ";
-        } else if (searchByDirector) {
-            baseQuery += "WHERE LOWER(d.name) LIKE LOWER(?)";
+    private Set<FilmLike> executeLikesOneByOne(String query, List<FilmLike> likes) {
+        Set<FilmLike> changed = new HashSet<>();
+        for (FilmLike like : likes) {
+            try {
+                if (jdbc.update(query, like.getFilmId(), like.getUserId()) > 0) {
+                    changed.add(like);
+                }
+            } catch (DuplicateKeyException ignored) {
+                // лайк уже добавлен другим запросом
+            }
         }
+        return changed;
+    }
 
-        return baseQuery;
+    private void addLikeFeedEvents(Collection<FilmLike> likes, FeedEventOperation operation) {
+        if (likes.isEmpty()) {
+            return;
+        }
+        LocalDateTime timestamp = LocalDateTime.now();
+        feedEventPipeline.publishAll(likes.stream()
+                .map(like -> new FeedEvent(like.getUserId(), like.getFilmId(), FeedEntityType.LIKE, operation, timestamp))
+                .toList());
     }
 
-    private List<Film> findFilmsByIds(List<Integer> filmIds) {
+    @Override
+    public List<Film> getFilmsByIds(List<Integer> filmIds) {
         if (filmIds.isEmpty()) {
             return Collections.emptyList();
         }
 
-        List<Film> rawFilms = findManyByParamList(FIND_FILMS_BY_IDS_QUERY, filmIds, mapper);
-
-        return groupValues(rawFilms);
-    }
+        Map<Integer, Film> filmsById = new HashMap<>();
+        Map<Integer, Long> stamps = new HashMap<>();
+        for (int filmId : filmIds) {
+            Film cached = filmCache.get(filmId);
+            if (cached != null) {
+                filmsById.put(filmId, cached);
+            } else {
+                stamps.put(filmId, filmCache.stamp(filmId));
+            }
+        }
 
-    @Override
-    public List<Film> getRecommended(int userId) {
-        List<Film> rawFilms = findMany(RECOMMENDED_QUERY, userId, userId, userId);
+        List<Integer> missingIds = new ArrayList<>(stamps.keySet());
+        for (int from = 0; from < missingIds.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Integer> batch = missingIds.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, missingIds.size()));
+            for (Film film : hydrate(findManyByParamList(FIND_FILMS_BY_IDS_QUERY, batch, mapper))) {
+                filmCache.load(film, stamps.get(film.getId()));
+                filmsById.put(film.getId(), film);
+            }
+        }
 
-        return groupValues(rawFilms);
+        filmsById.values().forEach(likeWriteBuffer::applyPendingLikes);
+        return filmIds.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 }
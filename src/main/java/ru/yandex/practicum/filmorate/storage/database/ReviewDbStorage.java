@@ -2,15 +2,18 @@ package ru.yandex.practicum.filmorate.storage.database;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.FeedEntityType;
 import ru.yandex.practicum.filmorate.model.FeedEventOperation;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.model.ReviewReaction;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
+import ru.yandex.practicum.filmorate.storage.database.mapper.ReviewContentCodec;
 import ru.yandex.practicum.filmorate.storage.database.mapper.ReviewReactionRowMapper;
 
 import java.util.List;
@@ -37,31 +40,80 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
             FROM REVIEW
             WHERE REVIEW_ID = ?
             """;
+    // списки отзывов читаются с текстом или без него: вместо %s подставляется столбец CONTENT либо NULL
+    private static final String CONTENT_COLUMN = "CONTENT";
+    private static final String NO_CONTENT_COLUMN = "CAST(NULL AS VARBINARY) AS CONTENT";
     private static final String FIND_REVIEWS_BY_FILM_QUERY = """
             SELECT
                 REVIEW_ID,
-                CONTENT,
+                %s,
                 IS_POSITIVE,
                 USER_ID,
                 FILM_ID,
                 USEFUL
             FROM REVIEW
             WHERE FILM_ID = ?
-            ORDER BY USEFUL DESC
+            ORDER BY USEFUL DESC, REVIEW_ID
             LIMIT ?
             """;
     private static final String FIND_ALL_REVIEWS_QUERY = """
             SELECT
                 REVIEW_ID,
-                CONTENT,
+                %s,
+                IS_POSITIVE,
+                USER_ID,
+                FILM_ID,
+                USEFUL
+            FROM REVIEW
+            ORDER BY USEFUL DESC, REVIEW_ID
+            LIMIT ?
+            """;
+    // условие USEFUL <= ? задает границу просмотра индекса, поэтому глубокая страница читается так же, как первая
+    private static final String FIND_REVIEWS_PAGE_BY_FILM_QUERY = """
+            SELECT
+                REVIEW_ID,
+                %s,
                 IS_POSITIVE,
                 USER_ID,
                 FILM_ID,
                 USEFUL
             FROM REVIEW
-            ORDER BY USEFUL DESC
+            WHERE FILM_ID = ?
+            AND USEFUL <= ?
+            AND (USEFUL < ? OR REVIEW_ID > ?)
+            ORDER BY USEFUL DESC, REVIEW_ID
             LIMIT ?
             """;
+    private static final String FIND_REVIEWS_PAGE_QUERY = """
+            SELECT
+                REVIEW_ID,
+                %s,
+                IS_POSITIVE,
+                USER_ID,
+                FILM_ID,
+                USEFUL
+            FROM REVIEW
+            WHERE USEFUL <= ?
+            AND (USEFUL < ? OR REVIEW_ID > ?)
+            ORDER BY USEFUL DESC, REVIEW_ID
+            LIMIT ?
+            """;
+    private static final String FIND_REVIEWS_BY_IDS_QUERY = """
+            SELECT
+                REVIEW_ID,
+                %s,
+                IS_POSITIVE,
+                USER_ID,
+                FILM_ID,
+                USEFUL
+            FROM REVIEW
+            WHERE REVIEW_ID IN (:param)
+            """;
+    private static final String FIND_CONTENT_QUERY = """
+            SELECT CONTENT
+            FROM REVIEW
+            WHERE REVIEW_ID = ?
+            """;
     private static final String UPDATE_QUERY = """
             UPDATE REVIEW
             SET CONTENT = ?, IS_POSITIVE = ?
@@ -81,39 +133,62 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
             WHERE REVIEW_ID = ?
             AND USER_ID = ?;
             """;
-    private static final String UPDATE_REVIEW_USEFUL_QUERY = """
-            UPDATE REVIEW
-            SET USEFUL = ?
-            WHERE REVIEW_ID = ?;
+    // полезность меняется относительно текущего значения под блокировкой строки, обновленный отзыв
+    // возвращается тем же запросом
+    private static final String CHANGE_REVIEW_USEFUL_QUERY = """
+            SELECT
+                REVIEW_ID,
+                CONTENT,
+                IS_POSITIVE,
+                USER_ID,
+                FILM_ID,
+                USEFUL
+            FROM FINAL TABLE (
+                UPDATE REVIEW
+                SET USEFUL = USEFUL + ?
+                WHERE REVIEW_ID = ?
+            )
             """;
+    // реакция добавляется, только если отзыв и пользователь существуют и реакции еще нет
     private static final String ADD_REVIEW_REACTION_QUERY = """
-            MERGE
-            INTO REVIEW_LIKE (REVIEW_ID, USER_ID, IS_POSITIVE) KEY (REVIEW_ID, USER_ID)
-            VALUES (?, ?, ?)
+            INSERT INTO REVIEW_LIKE (REVIEW_ID, USER_ID, IS_POSITIVE)
+            SELECT r.REVIEW_ID, u.USER_ID, ?
+            FROM REVIEW r, USERS u
+            WHERE r.REVIEW_ID = ?
+            AND u.USER_ID = ?
+            AND NOT EXISTS (SELECT 1 FROM REVIEW_LIKE rl WHERE rl.REVIEW_ID = r.REVIEW_ID AND rl.USER_ID = u.USER_ID)
+            """;
+    private static final String FLIP_REVIEW_REACTION_QUERY = """
+            UPDATE REVIEW_LIKE
+            SET IS_POSITIVE = ?
+            WHERE REVIEW_ID = ? AND USER_ID = ? AND IS_POSITIVE <> ?
             """;
     private static final String DELETE_REVIEW_REACTION_QUERY = """
             DELETE
             FROM REVIEW_LIKE
-            WHERE REVIEW_ID = ? AND USER_ID = ?
+            WHERE REVIEW_ID = ? AND USER_ID = ? AND IS_POSITIVE = ?
             """;
 
 
-    public ReviewDbStorage(JdbcTemplate jdbc, RowMapper<Review> mapper) {
+    private final FeedEventPipeline feedEventPipeline;
+
+    public ReviewDbStorage(JdbcTemplate jdbc, RowMapper<Review> mapper, FeedEventPipeline feedEventPipeline) {
         super(jdbc, mapper);
+        this.feedEventPipeline = feedEventPipeline;
     }
 
     @Override
     public Review createReview(Review review) {
         int id = insert(
                 INSERT_QUERY,
-                review.getContent(),
+                ReviewContentCodec.encode(review.getContent()),
                 review.isPositive(),
                 review.getUserId(),
                 review.getFilmId(),
                 review.getUseful()
         );
         review.setId(id);
-        addFeedEvent(review.getUserId(), review.getId(), FeedEntityType.REVIEW, FeedEventOperation.ADD);
+        feedEventPipeline.publish(review.getUserId(), review.getId(), FeedEntityType.REVIEW, FeedEventOperation.ADD);
         return review;
     }
 
@@ -123,24 +198,51 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
     }
 
     @Override
-    public List<Review> getReviewsByFilm(int filmId, int count) {
-        return findMany(FIND_REVIEWS_BY_FILM_QUERY, filmId, count);
+    public List<Review> getReviewsByFilm(int filmId, int count, boolean withContent) {
+        return findMany(project(FIND_REVIEWS_BY_FILM_QUERY, withContent), filmId, count);
+    }
+
+    @Override
+    public List<Review> getReviewsPage(Integer filmId, int afterUseful, int afterReviewId, int limit,
+                                       boolean withContent) {
+        if (filmId == null) {
+            return findMany(project(FIND_REVIEWS_PAGE_QUERY, withContent), afterUseful, afterUseful, afterReviewId,
+                    limit);
+        }
+        return findMany(project(FIND_REVIEWS_PAGE_BY_FILM_QUERY, withContent), filmId, afterUseful, afterUseful,
+                afterReviewId, limit);
+    }
+
+    @Override
+    public List<Review> getReviewsByIds(List<Integer> reviewIds, boolean withContent) {
+        if (reviewIds.isEmpty()) {
+            return List.of();
+        }
+        return findManyByParamList(project(FIND_REVIEWS_BY_IDS_QUERY, withContent), reviewIds, mapper);
+    }
+
+    @Override
+    public List<Review> getAllReviews(int count, boolean withContent) {
+        return findMany(project(FIND_ALL_REVIEWS_QUERY, withContent), count);
     }
 
     @Override
-    public List<Review> getAllReviews(int count) {
-        return findMany(FIND_ALL_REVIEWS_QUERY, count);
+    public Optional<String> getReviewContent(int reviewId) {
+        return jdbc.query(FIND_CONTENT_QUERY, (rs, rowNum) -> ReviewContentCodec.decode(rs.getBytes("content")),
+                        reviewId)
+                .stream()
+                .findFirst();
     }
 
     @Override
     public Review updateReview(Review review) {
         update(
                 UPDATE_QUERY,
-                review.getContent(),
+                ReviewContentCodec.encode(review.getContent()),
                 review.isPositive(),
                 review.getId()
         );
-        addFeedEvent(review.getUserId(), review.getId(), FeedEntityType.REVIEW, FeedEventOperation.UPDATE);
+        feedEventPipeline.publish(review.getUserId(), review.getId(), FeedEntityType.REVIEW, FeedEventOperation.UPDATE);
         return review;
     }
 
@@ -148,11 +250,15 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
     public boolean deleteReview(Review review) {
         boolean result = delete(DELETE_REVIEW_QUERY, review.getId());
         if (result) {
-            addFeedEvent(review.getUserId(), review.getId(), FeedEntityType.REVIEW, FeedEventOperation.REMOVE);
+            feedEventPipeline.publish(review.getUserId(), review.getId(), FeedEntityType.REVIEW, FeedEventOperation.REMOVE);
         }
         return result;
     }
 
+    private static String project(String query, boolean withContent) {
+        return query.formatted(withContent ? CONTENT_COLUMN : NO_CONTENT_COLUMN);
+    }
+
     @Override
     public Optional<ReviewReaction> getReviewReaction(int reviewId, int userId) {
         try {
@@ -163,14 +269,34 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
     }
 
     @Override
-    public void addReviewReaction(int reviewId, int userId, boolean isPositiveReaction, int useful) {
-        update(ADD_REVIEW_REACTION_QUERY, reviewId, userId, isPositiveReaction);
-        update(UPDATE_REVIEW_USEFUL_QUERY, useful, reviewId);
+    @Transactional
+    public Optional<Review> addReviewReaction(int reviewId, int userId, boolean isPositiveReaction) {
+        int sign = isPositiveReaction ? 1 : -1;
+        int inserted;
+        try {
+            inserted = jdbc.update(ADD_REVIEW_REACTION_QUERY, isPositiveReaction, reviewId, userId);
+        } catch (DuplicateKeyException e) {
+            // реакцию одновременно добавил параллельный запрос того же пользователя
+            inserted = 0;
+        }
+        if (inserted > 0) {
+            return findOne(CHANGE_REVIEW_USEFUL_QUERY, sign, reviewId);
+        }
+        // смена реакции на противоположную снимает прежнюю и добавляет новую
+        int flipped = jdbc.update(FLIP_REVIEW_REACTION_QUERY, isPositiveReaction, reviewId, userId, isPositiveReaction);
+        if (flipped > 0) {
+            return findOne(CHANGE_REVIEW_USEFUL_QUERY, 2 * sign, reviewId);
+        }
+        return Optional.empty();
     }
 
     @Override
-    public void deleteReviewReaction(int reviewId, int userId, int useful) {
-        update(DELETE_REVIEW_REACTION_QUERY, reviewId, userId);
-        update(UPDATE_REVIEW_USEFUL_QUERY, useful, reviewId);
+    @Transactional
+    public Optional<Review> deleteReviewReaction(int reviewId, int userId, boolean isPositiveReaction) {
+        int deleted = jdbc.update(DELETE_REVIEW_REACTION_QUERY, reviewId, userId, isPositiveReaction);
+        if (deleted == 0) {
+            return Optional.empty();
+        }
+        return findOne(CHANGE_REVIEW_USEFUL_QUERY, isPositiveReaction ? -1 : 1, reviewId);
     }
 }
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage.database;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.StreamingStorage;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// Потоковое чтение таблиц: строки читаются курсором с ограниченным fetch size
+// и передаются потребителю по одной, без накопления всей выборки в памяти.
+@Repository
+public class StreamingDbStorage implements StreamingStorage {
+
+    private static final int FETCH_SIZE = 500;
+    private static final String STREAM_FILMS_QUERY = """
+            SELECT
+                f.FILM_ID,
+                f.NAME,
+                f.DESCRIPTION,
+                f.RELEASE_DATE,
+                f.DURATION,
+                f.RATING_ID,
+                r.NAME AS RATING_NAME,
+                g.GENRE_ID,
+                g.NAME AS GENRE_NAME,
+                d.DIRECTOR_ID,
+                d.NAME AS DIRECTOR_NAME
+            FROM FILM f
+            LEFT JOIN RATING r ON f.RATING_ID = r.RATING_ID
+            LEFT JOIN FILM_GENRE fg ON f.FILM_ID = fg.FILM_ID
+            LEFT JOIN GENRE g ON fg.GENRE_ID = g.GENRE_ID
+            LEFT JOIN FILM_DIRECTOR fd ON f.FILM_ID = fd.FILM_ID
+            LEFT JOIN DIRECTOR d ON fd.DIRECTOR_ID = d.DIRECTOR_ID
+            ORDER BY f.FILM_ID
+            """;
+    private static final String STREAM_USERS_QUERY = """
+            SELECT
+                USER_ID,
+                EMAIL,
+                LOGIN,
+                NAME,
+                BIRTHDAY
+            FROM USERS
+            ORDER BY USER_ID
+            """;
+    private static final String STREAM_FILM_LIKES_QUERY = """
+            SELECT
+                FILM_ID,
+                USER_ID
+            FROM FILM_LIKE
+            """;
+    private static final String STREAM_FRIENDSHIPS_QUERY = """
+            SELECT
+                f.USER_ID,
+                f.FRIEND_ID,
+                fs.STATUS
+            FROM FRIENDSHIP f
+            JOIN FRIENDSHIP_STATUS fs ON f.FRIENDSHIP_STATUS_ID = fs.FRIENDSHIP_STATUS_ID
+            """;
+    private final JdbcTemplate streamingJdbc;
+    private final RowMapper<Film> filmRowMapper;
+    private final RowMapper<User> userRowMapper;
+
+    public StreamingDbStorage(JdbcTemplate jdbc, RowMapper<Film> filmRowMapper, RowMapper<User> userRowMapper) {
+        this.streamingJdbc = new JdbcTemplate(jdbc.getDataSource());
+        this.streamingJdbc.setFetchSize(FETCH_SIZE);
+        this.filmRowMapper = filmRowMapper;
+        this.userRowMapper = userRowMapper;
+    }
+
+    @Override
+    public void streamFilms(Consumer<Film> consumer) {
+        // строки одного фильма идут подряд, фильм отдается, как только начинается следующий
+        Film[] current = new Film[1];
+        streamingJdbc.query(STREAM_FILMS_QUERY, (RowCallbackHandler) rs -> {
+            int filmId = rs.getInt("FILM_ID");
+            if (current[0] == null || current[0].getId() != filmId) {
+                if (current[0] != null) {
+                    consumer.accept(current[0]);
+                }
+                current[0] = filmRowMapper.mapRow(rs, rs.getRow());
+            }
+            int genreId = rs.getInt("GENRE_ID");
+            if (genreId != 0) {
+                current[0].getGenres().add(new Genre(genreId, rs.getString("GENRE_NAME")));
+            }
+            int directorId = rs.getInt("DIRECTOR_ID");
+            if (directorId != 0) {
+                current[0].getDirectors().add(new Director(directorId, rs.getString("DIRECTOR_NAME")));
+            }
+        });
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+    }
+
+    @Override
+    public void streamUsers(Consumer<User> consumer) {
+        streamingJdbc.query(STREAM_USERS_QUERY, (RowCallbackHandler) rs ->
+                consumer.accept(userRowMapper.mapRow(rs, rs.getRow())));
+    }
+
+    @Override
+    public void streamFilmLikes(Consumer<FilmLike> consumer) {
+        streamingJdbc.query(STREAM_FILM_LIKES_QUERY, (RowCallbackHandler) rs ->
+                consumer.accept(new FilmLike(rs.getInt("FILM_ID"), rs.getInt("USER_ID"))));
+    }
+
+    @Override
+    public void streamFriendships(BiConsumer<Integer, Friendship> consumer) {
+        streamingJdbc.query(STREAM_FRIENDSHIPS_QUERY, (RowCallbackHandler) rs ->
+                consumer.accept(rs.getInt("USER_ID"), new Friendship(rs.getInt("FRIEND_ID"), rs.getString("STATUS"))));
+    }
+}
@@ -3,8 +3,11 @@ package ru.yandex.practicum.filmorate.storage.database;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dto.user.FeedDto;
 import ru.yandex.practicum.filmorate.model.FeedEntityType;
 import ru.yandex.practicum.filmorate.model.FeedEventOperation;
@@ -14,9 +17,14 @@ import ru.yandex.practicum.filmorate.storage.UserStorage;
 import ru.yandex.practicum.filmorate.storage.database.mapper.FeedRowMapper;
 
 import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Primary
@@ -29,18 +37,34 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
                 u.EMAIL,
                 u.LOGIN,
                 u.NAME,
-                u.BIRTHDAY,
-                f.FRIEND_ID,
-                fs.STATUS
+                u.BIRTHDAY
             FROM USERS u
-            LEFT JOIN FRIENDSHIP f USING(USER_ID)
-            LEFT JOIN FRIENDSHIP_STATUS fs ON f.FRIENDSHIP_STATUS_ID = fs.FRIENDSHIP_STATUS_ID
             """;
-    private static final String FIND_ALL_QUERY = BASE_QUERY;
+    private static final String FIND_ALL_QUERY = BASE_QUERY +
+            " ORDER BY u.USER_ID";
     private static final String FIND_BY_ID_QUERY = BASE_QUERY +
             " WHERE u.USER_ID = ?";
     private static final String FIND_USERS_BY_IDS_QUERY = BASE_QUERY +
             " WHERE u.USER_ID IN (:param)";
+    private static final String USER_EXISTS_QUERY = """
+            SELECT EXISTS(SELECT 1 FROM USERS WHERE USER_ID = ?)
+            """;
+    private static final String FIND_EXISTING_USER_IDS_QUERY = """
+            SELECT USER_ID
+            FROM USERS
+            WHERE USER_ID IN (:param)
+            """;
+    private static final String FIND_USERS_PAGE_QUERY = BASE_QUERY +
+            " WHERE u.USER_ID > ? ORDER BY u.USER_ID LIMIT ?";
+    private static final String FRIENDSHIPS_BY_USER_IDS_QUERY = """
+            SELECT
+                f.USER_ID,
+                f.FRIEND_ID,
+                fs.STATUS
+            FROM FRIENDSHIP f
+            JOIN FRIENDSHIP_STATUS fs ON f.FRIENDSHIP_STATUS_ID = fs.FRIENDSHIP_STATUS_ID
+            WHERE f.USER_ID IN (:param)
+            """;
     private static final String INSERT_QUERY = """
             INSERT INTO
             USERS(EMAIL, LOGIN, NAME, BIRTHDAY)
@@ -64,19 +88,8 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
             DELETE FROM FRIENDSHIP
             WHERE USER_ID = ? AND FRIEND_ID = ?
             """;
-    private static final String FIND_USER_FRIENDS_QUERY = """
-            SELECT
-                u.USER_ID,
-                u.EMAIL,
-                u.LOGIN,
-                u.NAME,
-                u.BIRTHDAY,
-                f2.FRIEND_ID,
-                fs.STATUS
-            FROM FRIENDSHIP f1
-            JOIN USERS u ON f1.FRIEND_ID = u.USER_ID
-            LEFT JOIN FRIENDSHIP f2 ON u.USER_ID = f2.USER_ID
-            LEFT JOIN FRIENDSHIP_STATUS fs ON f2.FRIENDSHIP_STATUS_ID = fs.FRIENDSHIP_STATUS_ID
+    private static final String FIND_USER_FRIENDS_QUERY = BASE_QUERY + """
+            JOIN FRIENDSHIP f1 ON f1.FRIEND_ID = u.USER_ID
             WHERE f1.USER_ID = ?
             ORDER BY u.USER_ID
             """;
@@ -85,6 +98,16 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
             FROM USERS
             WHERE USER_ID = ?
             """;
+    private static final String DECREASE_LIKES_COUNT_OF_USER_FILMS_QUERY = """
+            UPDATE FILM
+            SET LIKES_COUNT = LIKES_COUNT - 1
+            WHERE FILM_ID IN (SELECT FILM_ID FROM FILM_LIKE WHERE USER_ID = ?)
+            """;
+    private static final String FIND_LIKED_FILM_IDS_QUERY = """
+            SELECT FILM_ID
+            FROM FILM_LIKE
+            WHERE USER_ID = ?
+            """;
     private static final String GET_USER_FEED_QUERY = """
             SELECT
             EVENT_ID, "TIMESTAMP", USER_ID, ENTITY_ID, EVENT_TYPE, OPERATION
@@ -92,9 +115,43 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
             WHERE USER_ID=?
             ORDER BY EVENT_ID
             """;
+    // диапазонное чтение по индексу IDX_FEED_USER_EVENT от самого нового события
+    private static final String GET_USER_FEED_PAGE_QUERY = """
+            SELECT
+            EVENT_ID, "TIMESTAMP", USER_ID, ENTITY_ID, EVENT_TYPE, OPERATION
+            FROM FEED
+            WHERE USER_ID = ? AND EVENT_ID < ?
+            ORDER BY EVENT_ID DESC
+            LIMIT ?
+            """;
+    private static final String FIND_FRIEND_IDS_QUERY = """
+            SELECT FRIEND_ID
+            FROM FRIENDSHIP
+            WHERE USER_ID = ?
+            """;
+    // для каждого пользователя читается одна строка индекса IDX_FEED_USER_EVENT, а не вся его история;
+    // у пользователей без подходящих событий EVENT_ID равен NULL
+    private static final String LATEST_FEED_EVENT_IDS_QUERY = """
+            SELECT
+                u.USER_ID,
+                (SELECT f.EVENT_ID
+                 FROM FEED f
+                 WHERE f.USER_ID = u.USER_ID AND f.EVENT_ID < :before
+                 ORDER BY f.EVENT_ID DESC
+                 LIMIT 1) AS EVENT_ID
+            FROM USERS u
+            WHERE u.USER_ID IN (:param)
+            """;
 
-    public UserDbStorage(JdbcTemplate jdbc, RowMapper<User> mapper) {
+    // ограничение размера списка IN (...) в запросе догрузки дружб
+    private static final int HYDRATION_BATCH_SIZE = 1000;
+    private final NamedParameterJdbcTemplate namedJdbc = new NamedParameterJdbcTemplate(jdbc);
+
+    private final FeedEventPipeline feedEventPipeline;
+
+    public UserDbStorage(JdbcTemplate jdbc, RowMapper<User> mapper, FeedEventPipeline feedEventPipeline) {
         super(jdbc, mapper);
+        this.feedEventPipeline = feedEventPipeline;
     }
 
     @Override
@@ -112,18 +169,26 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
 
     @Override
     public List<User> getAllUsers() {
-        List<User> rawUsers = findMany(FIND_ALL_QUERY);
+        return hydrate(findMany(FIND_ALL_QUERY));
+    }
 
-        return groupValues(rawUsers);
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        return hydrate(findMany(FIND_USERS_PAGE_QUERY, afterId, limit));
     }
 
     @Override
     public User getUserById(int userId) {
-        List<User> rawUsers = findMany(FIND_BY_ID_QUERY, userId);
-        if (rawUsers.isEmpty()) {
+        List<User> users = hydrate(findMany(FIND_BY_ID_QUERY, userId));
+        if (users.isEmpty()) {
             return null;
         }
-        return groupValues(rawUsers).getFirst();
+        return users.getFirst();
+    }
+
+    @Override
+    public boolean existsUserById(int userId) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(USER_EXISTS_QUERY, Boolean.class, userId));
     }
 
     @Override
@@ -142,7 +207,7 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
     @Override
     public void addFriend(int userId, int friendId, int friendshipStatusId) {
         update(ADD_FRIEND_QUERY, userId, friendId, friendshipStatusId);
-        addFeedEvent(userId, friendId, FeedEntityType.FRIEND, FeedEventOperation.ADD);
+        feedEventPipeline.publish(userId, friendId, FeedEntityType.FRIEND, FeedEventOperation.ADD);
     }
 
     @Override
@@ -154,35 +219,36 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
     public boolean deleteFriend(int userId, int friendId) {
         boolean result = delete(DELETE_FRIEND_QUERY, userId, friendId);
         if (result) {
-            addFeedEvent(userId, friendId, FeedEntityType.FRIEND, FeedEventOperation.REMOVE);
+            feedEventPipeline.publish(userId, friendId, FeedEntityType.FRIEND, FeedEventOperation.REMOVE);
         }
         return result;
     }
 
     @Override
     public List<User> getUserFriends(int userId) {
-        List<User> rawFriends = findMany(FIND_USER_FRIENDS_QUERY, userId);
-
-        return groupValues(rawFriends);
+        return hydrate(findMany(FIND_USER_FRIENDS_QUERY, userId));
     }
 
-    private List<User> groupValues(List<User> rawUsers) {
-        if (rawUsers.isEmpty()) {
-            return rawUsers;
+    // Догружает дружбы отдельным запросом по списку id пользователей с сохранением порядка пользователей
+    private List<User> hydrate(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        Map<Integer, User> usersById = new LinkedHashMap<>();
+        for (User user : users) {
+            usersById.putIfAbsent(user.getId(), user);
         }
-        Map<Integer, User> users = new HashMap<>();
-        for (User user : rawUsers) {
-            users.compute(user.getId(), (id, usr) -> {
-                if (usr == null) {
-                    return user;
-                }
-                for (Friendship friendship : user.getFriends().values()) {
-                    usr.addFriend(friendship);
-                }
-                return usr;
-            });
+
+        List<Integer> userIds = new ArrayList<>(usersById.keySet());
+        for (int from = 0; from < userIds.size(); from += HYDRATION_BATCH_SIZE) {
+            Map<String, List<Integer>> params = Map.of("param",
+                    userIds.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, userIds.size())));
+            RowCallbackHandler friendshipHandler = rs -> usersById.get(rs.getInt("USER_ID"))
+                    .addFriend(new Friendship(rs.getInt("FRIEND_ID"), rs.getString("STATUS")));
+            namedJdbc.query(FRIENDSHIPS_BY_USER_IDS_QUERY, params, friendshipHandler);
         }
-        return users.values().stream().toList();
+
+        return usersById.values().stream().toList();
     }
 
     @Override
@@ -192,18 +258,67 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
             throw new IllegalArgumentException("В метод не переданы id пользователей");
         }
 
-        return findManyByParamList(FIND_USERS_BY_IDS_QUERY, userIds, mapper);
+        return hydrate(findManyByParamList(FIND_USERS_BY_IDS_QUERY, userIds, mapper));
     }
 
     @Override
+    @Transactional
     public boolean deleteUserById(int userId) {
+        // лайки пользователя удаляются каскадно, поэтому счетчики лайков фильмов уменьшаются заранее
+        jdbc.update(DECREASE_LIKES_COUNT_OF_USER_FILMS_QUERY, userId);
         int rowsAffected = jdbc.update(DELETE_USER_QUERY, userId);
         return rowsAffected > 0;
     }
 
+    @Override
+    public Set<Integer> getExistingUserIds(Collection<Integer> userIds) {
+        Set<Integer> existingIds = new HashSet<>();
+        List<Integer> ids = new ArrayList<>(userIds);
+        for (int from = 0; from < ids.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, ids.size()));
+            namedJdbc.query(FIND_EXISTING_USER_IDS_QUERY, Map.of("param", batch),
+                    (RowCallbackHandler) rs -> existingIds.add(rs.getInt("USER_ID")));
+        }
+        return existingIds;
+    }
+
+    @Override
+    public List<Integer> getLikedFilmIds(int userId) {
+        return jdbc.queryForList(FIND_LIKED_FILM_IDS_QUERY, Integer.class, userId);
+    }
+
     @Override
     public List<FeedDto> getUserFeed(int userId) {
+        feedEventPipeline.awaitUserEvents(userId);
         return jdbc.query(GET_USER_FEED_QUERY, new FeedRowMapper(), userId);
     }
 
+    @Override
+    public List<FeedDto> getUserFeedPage(int userId, int beforeEventId, int limit) {
+        feedEventPipeline.awaitUserEvents(userId);
+        return jdbc.query(GET_USER_FEED_PAGE_QUERY, new FeedRowMapper(), userId, beforeEventId, limit);
+    }
+
+    @Override
+    public List<Integer> getFriendIds(int userId) {
+        return jdbc.queryForList(FIND_FRIEND_IDS_QUERY, Integer.class, userId);
+    }
+
+    @Override
+    public Map<Integer, Integer> getLatestFeedEventIds(Collection<Integer> userIds, int beforeEventId) {
+        Map<Integer, Integer> latestEventIds = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(userIds);
+        for (int from = 0; from < ids.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, ids.size()));
+            namedJdbc.query(LATEST_FEED_EVENT_IDS_QUERY, Map.of("param", batch, "before", beforeEventId),
+                    (RowCallbackHandler) rs -> {
+                        int eventId = rs.getInt("EVENT_ID");
+                        if (!rs.wasNull()) {
+                            latestEventIds.put(rs.getInt("USER_ID"), eventId);
+                        }
+                    });
+        }
+        return latestEventIds;
+    }
+
 }
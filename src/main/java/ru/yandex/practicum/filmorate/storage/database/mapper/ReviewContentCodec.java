@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.storage.database.mapper;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Хранение текста отзыва в REVIEW.CONTENT.
+ * Первый байт задает способ записи остальных: 0 - текст в UTF-8 как есть, 1 - текст в UTF-8, сжатый deflate.
+ * Короткие тексты и тексты, которые сжатие не уменьшает, хранятся как есть.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ReviewContentCodec {
+    private static final byte RAW = 0;
+    private static final byte DEFLATE = 1;
+    // тексты короче этого размера в байтах не сжимаются: выигрыш меньше затрат на распаковку
+    private static final int MIN_COMPRESSED_SIZE = 256;
+    private static final int BUFFER_SIZE = 4096;
+
+    public static byte[] encode(String content) {
+        byte[] text = content.getBytes(StandardCharsets.UTF_8);
+        if (text.length >= MIN_COMPRESSED_SIZE) {
+            byte[] compressed = deflate(text);
+            if (compressed.length < text.length) {
+                return withHeader(DEFLATE, compressed);
+            }
+        }
+        return withHeader(RAW, text);
+    }
+
+    public static String decode(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        byte[] body = Arrays.copyOfRange(stored, 1, stored.length);
+        return switch (stored[0]) {
+            case RAW -> new String(body, StandardCharsets.UTF_8);
+            case DEFLATE -> new String(inflate(body), StandardCharsets.UTF_8);
+            default -> throw new InternalServerException("Неизвестный способ хранения текста отзыва: " + stored[0]);
+        };
+    }
+
+    private static byte[] withHeader(byte codec, byte[] body) {
+        byte[] stored = new byte[body.length + 1];
+        stored[0] = codec;
+        System.arraycopy(body, 0, stored, 1, body.length);
+        return stored;
+    }
+
+    private static byte[] deflate(byte[] text) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(text);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(text.length / 2);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 3);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new InternalServerException("Текст отзыва поврежден");
+                }
+                out.write(buffer, 0, inflated);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new InternalServerException("Текст отзыва поврежден");
+        } finally {
+            inflater.end();
+        }
+    }
+}
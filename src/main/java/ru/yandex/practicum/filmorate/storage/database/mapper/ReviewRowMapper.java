@@ -14,7 +14,7 @@ public class ReviewRowMapper implements RowMapper<Review> {
     public Review mapRow(ResultSet resultSet, int rowNum) throws SQLException {
         Review review = new Review();
         review.setId(resultSet.getInt("review_id"));
-        review.setContent(resultSet.getString("content"));
+        review.setContent(ReviewContentCodec.decode(resultSet.getBytes("content")));
         review.setPositive(resultSet.getBoolean("is_positive"));
         review.setUserId(resultSet.getInt("user_id"));
         review.setFilmId(resultSet.getInt("film_id"));
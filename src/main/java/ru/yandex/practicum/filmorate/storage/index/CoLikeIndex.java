@@ -0,0 +1,155 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Число пользователей, лайкнувших одновременно два фильма, для каждой пары фильмов.
+ * Для каждого фильма похожие фильмы хранятся упорядоченными по этому числу.
+ * Пары обновляются из {@link LikeMatrix} под ее блокировкой записи по набору фильмов пользователя
+ * до изменения, поэтому одновременные лайки одного пользователя учитываются ровно по одному разу.
+ */
+@Slf4j
+@Component
+public class CoLikeIndex implements FilmChangeListener, LikeMatrix.UserFilmsListener {
+    // число фильмов, которое одна задача пересчета обрабатывает без дальнейшего деления
+    private static final int REBUILD_BATCH_SIZE = 256;
+    private final LikeMatrix likeMatrix;
+    private final Map<Integer, RankedFilms> coLikes = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public CoLikeIndex(LikeMatrix likeMatrix) {
+        this.likeMatrix = likeMatrix;
+        likeMatrix.addUserFilmsListener(this);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, int[]> usersByFilm = likeMatrix.getUsersByFilm();
+        Map<Integer, int[]> filmsByUser = likeMatrix.getFilmsByUser();
+        int[] filmIds = usersByFilm.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Map<Integer, RankedFilms> rebuilt = ForkJoinPool.commonPool()
+                .invoke(new RebuildTask(filmIds, 0, filmIds.length, usersByFilm, filmsByUser));
+
+        lock.writeLock().lock();
+        try {
+            coLikes.clear();
+            coLikes.putAll(rebuilt);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Co-like index built for {} films", rebuilt.size());
+    }
+
+    public List<Integer> getSimilar(int filmId, int count) {
+        lock.readLock().lock();
+        try {
+            RankedFilms similar = coLikes.get(filmId);
+            return similar == null ? Collections.emptyList() : similar.getTop(count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmDeleted(int filmId) {
+        write(() -> {
+            RankedFilms similar = coLikes.remove(filmId);
+            if (similar != null) {
+                similar.getTop(similar.size()).forEach(otherFilmId -> change(otherFilmId, filmId, -similar.getScore(otherFilmId)));
+            }
+        });
+    }
+
+    @Override
+    public void onUserFilmsChanged(int filmId, int[] otherFilmIds, int delta) {
+        write(() -> {
+            for (int otherFilmId : otherFilmIds) {
+                if (otherFilmId != filmId) {
+                    change(filmId, otherFilmId, delta);
+                    change(otherFilmId, filmId, delta);
+                }
+            }
+        });
+    }
+
+    private void change(int filmId, int otherFilmId, int delta) {
+        RankedFilms similar = coLikes.computeIfAbsent(filmId, k -> new RankedFilms());
+        int score = similar.getScore(otherFilmId) + delta;
+        if (score > 0) {
+            similar.set(otherFilmId, score);
+            return;
+        }
+        similar.remove(otherFilmId);
+        if (similar.size() == 0) {
+            coLikes.remove(filmId);
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static class RebuildTask extends RecursiveTask<Map<Integer, RankedFilms>> {
+        private final int[] filmIds;
+        private final int from;
+        private final int to;
+        private final Map<Integer, int[]> usersByFilm;
+        private final Map<Integer, int[]> filmsByUser;
+
+        RebuildTask(int[] filmIds, int from, int to, Map<Integer, int[]> usersByFilm, Map<Integer, int[]> filmsByUser) {
+            this.filmIds = filmIds;
+            this.from = from;
+            this.to = to;
+            this.usersByFilm = usersByFilm;
+            this.filmsByUser = filmsByUser;
+        }
+
+        @Override
+        protected Map<Integer, RankedFilms> compute() {
+            if (to - from > REBUILD_BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                RebuildTask left = new RebuildTask(filmIds, from, middle, usersByFilm, filmsByUser);
+                left.fork();
+                Map<Integer, RankedFilms> result = new RebuildTask(filmIds, middle, to, usersByFilm, filmsByUser).compute();
+                result.putAll(left.join());
+                return result;
+            }
+
+            // каждая задача строит строки только своих фильмов, поэтому результаты не пересекаются
+            Map<Integer, RankedFilms> result = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                int filmId = filmIds[i];
+                Map<Integer, Integer> counts = new HashMap<>();
+                for (int userId : usersByFilm.get(filmId)) {
+                    for (int otherFilmId : filmsByUser.getOrDefault(userId, SortedIntArrays.EMPTY)) {
+                        if (otherFilmId != filmId) {
+                            counts.merge(otherFilmId, 1, Integer::sum);
+                        }
+                    }
+                }
+                if (!counts.isEmpty()) {
+                    RankedFilms similar = new RankedFilms();
+                    counts.forEach(similar::set);
+                    result.put(filmId, similar);
+                }
+            }
+            return result;
+        }
+    }
+}
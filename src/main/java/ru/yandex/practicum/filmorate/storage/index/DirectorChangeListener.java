@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import ru.yandex.practicum.filmorate.model.Director;
+
+/**
+ * Получатель изменений режиссёров.
+ * Вызывается сервисом после успешной записи в хранилище.
+ */
+public interface DirectorChangeListener {
+    default void onDirectorCreated(Director director) {
+    }
+
+    default void onDirectorUpdated(Director director) {
+    }
+
+    default void onDirectorDeleted(int directorId) {
+    }
+}
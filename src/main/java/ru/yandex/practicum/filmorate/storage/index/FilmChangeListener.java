@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import ru.yandex.practicum.filmorate.model.Film;
+
+/**
+ * Получатель изменений фильмов и лайков, поддерживающий производные структуры в памяти.
+ * Вызывается сервисами после успешной записи в хранилище.
+ */
+public interface FilmChangeListener {
+    default void onFilmCreated(Film film) {
+    }
+
+    default void onFilmUpdated(Film film) {
+    }
+
+    default void onFilmDeleted(int filmId) {
+    }
+
+    default void onLikeAdded(int filmId, int userId) {
+    }
+
+    default void onLikeRemoved(int filmId, int userId) {
+    }
+}
@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.StreamingStorage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Поисковый индекс фильмов по названию и по именам режиссёров.
+ * Строится при старте и обновляется при изменении фильмов и режиссёров.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex implements FilmChangeListener, DirectorChangeListener {
+    private final StreamingStorage streamingStorage;
+    private final DirectorStorage directorStorage;
+    private final TextIndex titles = new TextIndex();
+    private final TextIndex directorNames = new TextIndex();
+    private final Map<Integer, Set<Integer>> filmsByDirector = new HashMap<>();
+    private final Map<Integer, Set<Integer>> directorsByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            directorNames.clear();
+            filmsByDirector.clear();
+            directorsByFilm.clear();
+            directorStorage.getAllDirectors().forEach(director -> directorNames.put(director.getId(), director.getName()));
+            streamingStorage.streamFilms(this::putFilm);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Film search index built for {} films and {} directors", titles.size(), directorNames.size());
+    }
+
+    public Set<Integer> search(String query, boolean searchByTitle, boolean searchByDirector) {
+        lock.readLock().lock();
+        try {
+            Set<Integer> filmIds = new HashSet<>();
+            if (searchByTitle) {
+                filmIds.addAll(titles.find(query));
+            }
+            if (searchByDirector) {
+                for (int directorId : directorNames.find(query)) {
+                    filmIds.addAll(filmsByDirector.getOrDefault(directorId, Collections.emptySet()));
+                }
+            }
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmCreated(Film film) {
+        write(() -> putFilm(film));
+    }
+
+    @Override
+    public void onFilmUpdated(Film film) {
+        write(() -> putFilm(film));
+    }
+
+    @Override
+    public void onFilmDeleted(int filmId) {
+        write(() -> removeFilm(filmId));
+    }
+
+    @Override
+    public void onDirectorCreated(Director director) {
+        write(() -> directorNames.put(director.getId(), director.getName()));
+    }
+
+    @Override
+    public void onDirectorUpdated(Director director) {
+        write(() -> directorNames.put(director.getId(), director.getName()));
+    }
+
+    @Override
+    public void onDirectorDeleted(int directorId) {
+        write(() -> {
+            directorNames.remove(directorId);
+            // связи фильма с режиссёром удаляются каскадно
+            Set<Integer> filmIds = filmsByDirector.remove(directorId);
+            if (filmIds != null) {
+                filmIds.forEach(filmId -> directorsByFilm.get(filmId).remove(directorId));
+            }
+        });
+    }
+
+    private void putFilm(Film film) {
+        removeFilm(film.getId());
+        titles.put(film.getId(), film.getName());
+
+        Set<Integer> directorIds = new HashSet<>();
+        for (Director director : film.getDirectors()) {
+            directorIds.add(director.getId());
+            filmsByDirector.computeIfAbsent(director.getId(), k -> new HashSet<>()).add(film.getId());
+        }
+        directorsByFilm.put(film.getId(), directorIds);
+    }
+
+    private void removeFilm(int filmId) {
+        titles.remove(filmId);
+        Set<Integer> directorIds = directorsByFilm.remove(filmId);
+        if (directorIds == null) {
+            return;
+        }
+        for (int directorId : directorIds) {
+            Set<Integer> filmIds = filmsByDirector.get(directorId);
+            filmIds.remove(filmId);
+            if (filmIds.isEmpty()) {
+                filmsByDirector.remove(directorId);
+            }
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
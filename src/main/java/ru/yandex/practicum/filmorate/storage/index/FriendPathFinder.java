@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кратчайшая цепочка друзей между двумя пользователями.
+ * Двунаправленный поиск в ширину: от первого пользователя по его друзьям, от второго - по тем,
+ * кто добавил его в друзья; каждый раз расширяется меньший фронт. Уровни обхода хранятся массивами int
+ * вместе с позицией родителя на предыдущем уровне, посещенные пользователи отмечаются в BitSet.
+ * На запрос отводится не более {@link #MAX_VISITS} просмотренных дружб и {@link #TIME_BUDGET_MS} мс.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendPathFinder {
+    private static final int MAX_VISITS = 1_000_000;
+    private static final long TIME_BUDGET_MS = 50;
+    // как часто сверяться с часами, в просмотренных дружбах
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+    private final FriendshipGraph friendshipGraph;
+
+    /**
+     * Id пользователей цепочки от userId до otherId включительно либо null, если цепочки не длиннее
+     * maxDepth дружб нет или ее не удалось найти в пределах бюджета.
+     */
+    public int[] findPath(int userId, int otherId, int maxDepth) {
+        if (userId == otherId) {
+            return new int[]{userId};
+        }
+        Search search = new Search();
+        Side forward = new Side(userId);
+        Side backward = new Side(otherId);
+        while (forward.depth() + backward.depth() < maxDepth
+                && forward.frontier().size > 0 && backward.frontier().size > 0) {
+            boolean expandForward = forward.frontier().size <= backward.frontier().size;
+            int[] meeting = expandForward ? expand(forward, backward, true, search)
+                    : expand(backward, forward, false, search);
+            if (meeting != null) {
+                return expandForward ? join(forward, meeting[0], backward, meeting[1])
+                        : join(forward, meeting[1], backward, meeting[0]);
+            }
+            if (search.exhausted) {
+                log.info("Friend path search from {} to {} stopped after {} visits", userId, otherId, search.visits);
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // Расширяет сторону на один уровень; возвращает позиции встречи на последних уровнях обеих сторон
+    private int[] expand(Side side, Side other, boolean outgoing, Search search) {
+        Level frontier = side.frontier();
+        Level next = new Level(frontier.size);
+        for (int i = 0; i < frontier.size; i++) {
+            int[] row = outgoing ? friendshipGraph.getAdjacency(frontier.nodes[i])
+                    : friendshipGraph.getFollowers(frontier.nodes[i]);
+            for (int entry : row) {
+                if (!search.visit()) {
+                    return null;
+                }
+                int neighbourId = outgoing ? FriendshipGraph.friendId(entry) : entry;
+                if (other.visited.get(neighbourId)) {
+                    // до этого уровня стороны не пересекались, поэтому первая встреча дает кратчайшую цепочку,
+                    // а встреченный пользователь лежит на последнем уровне другой стороны
+                    next.add(neighbourId, i);
+                    side.levels.add(next);
+                    return new int[]{next.size - 1, other.frontier().indexOf(neighbourId)};
+                }
+                if (!side.visited.get(neighbourId)) {
+                    side.visited.set(neighbourId);
+                    next.add(neighbourId, i);
+                }
+            }
+        }
+        side.levels.add(next);
+        return null;
+    }
+
+    private static int[] join(Side forward, int forwardIndex, Side backward, int backwardIndex) {
+        int[] head = forward.pathTo(forwardIndex);
+        int[] tail = backward.pathTo(backwardIndex);
+        int[] path = Arrays.copyOf(head, head.length + tail.length - 1);
+        for (int i = 0; i < tail.length - 1; i++) {
+            path[head.length + i] = tail[tail.length - 2 - i];
+        }
+        return path;
+    }
+
+    // Бюджет одного поиска
+    private static class Search {
+        private final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_BUDGET_MS);
+        private int visits;
+        private boolean exhausted;
+
+        boolean visit() {
+            visits++;
+            if (visits > MAX_VISITS
+                    || visits % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                exhausted = true;
+            }
+            return !exhausted;
+        }
+    }
+
+    // Одна сторона поиска: уровни обхода от начального пользователя
+    private static class Side {
+        private final BitSet visited = new BitSet();
+        private final List<Level> levels = new ArrayList<>();
+
+        Side(int startId) {
+            Level start = new Level(1);
+            start.add(startId, -1);
+            levels.add(start);
+            visited.set(startId);
+        }
+
+        Level frontier() {
+            return levels.getLast();
+        }
+
+        int depth() {
+            return levels.size() - 1;
+        }
+
+        // Цепочка от начального пользователя до пользователя на позиции index последнего уровня
+        int[] pathTo(int index) {
+            int[] path = new int[levels.size()];
+            for (int depth = levels.size() - 1; depth >= 0; depth--) {
+                Level level = levels.get(depth);
+                path[depth] = level.nodes[index];
+                index = level.parents[index];
+            }
+            return path;
+        }
+    }
+
+    // Уровень обхода: пользователи и позиции их родителей на предыдущем уровне
+    private static class Level {
+        private int[] nodes;
+        private int[] parents;
+        private int size;
+
+        Level(int capacity) {
+            nodes = new int[Math.max(capacity, 1)];
+            parents = new int[nodes.length];
+        }
+
+        void add(int node, int parent) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                parents = Arrays.copyOf(parents, size * 2);
+            }
+            nodes[size] = node;
+            parents[size] = parent;
+            size++;
+        }
+
+        int indexOf(int node) {
+            for (int i = 0; i < size; i++) {
+                if (nodes[i] == node) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
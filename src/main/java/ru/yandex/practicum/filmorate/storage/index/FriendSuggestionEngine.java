@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Подбор возможных друзей по общим друзьям.
+ * Каждый общий друг добавляет кандидату произведение весов двух дружб: подтвержденная весит больше
+ * неподтвержденной. Работа на запрос ограничена: у друга с большим числом друзей просматривается
+ * не более {@link #MAX_FAN_OUT} из них, а всего - не более {@link #MAX_VISITS} дружб.
+ * Друзья просматриваются от менее общительных к более общительным, чтобы при исчерпании лимита
+ * потерялись наименее показательные связи.
+ */
+@Component
+@RequiredArgsConstructor
+public class FriendSuggestionEngine {
+    static final int CONFIRMED_WEIGHT = 2;
+    static final int NOT_CONFIRMED_WEIGHT = 1;
+    private static final int MAX_FAN_OUT = 1000;
+    private static final int MAX_VISITS = 100_000;
+    private final FriendshipGraph friendshipGraph;
+
+    /**
+     * Id возможных друзей по убыванию счета, при равенстве - по возрастанию id.
+     */
+    public List<Integer> suggest(int userId, int count) {
+        int[] adjacency = friendshipGraph.getAdjacency(userId);
+        if (adjacency.length == 0 || count <= 0) {
+            return Collections.emptyList();
+        }
+
+        int[][] friendRows = new int[adjacency.length][];
+        Integer[] order = new Integer[adjacency.length];
+        for (int i = 0; i < adjacency.length; i++) {
+            friendRows[i] = friendshipGraph.getAdjacency(FriendshipGraph.friendId(adjacency[i]));
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> friendRows[i].length));
+
+        Map<Integer, Integer> scores = new HashMap<>();
+        int visits = 0;
+        for (int i : order) {
+            int friendWeight = weight(adjacency[i]);
+            int[] row = friendRows[i];
+            // у очень общительного друга берется равномерная выборка его друзей
+            int step = Math.max(1, row.length / MAX_FAN_OUT);
+            for (int j = 0; j < row.length && visits < MAX_VISITS; j += step, visits++) {
+                int candidateId = FriendshipGraph.friendId(row[j]);
+                if (candidateId != userId && !FriendshipGraph.containsFriend(adjacency, candidateId)) {
+                    scores.merge(candidateId, friendWeight * weight(row[j]), Integer::sum);
+                }
+            }
+            if (visits >= MAX_VISITS) {
+                break;
+            }
+        }
+        return top(scores, count);
+    }
+
+    private static int weight(int entry) {
+        return FriendshipGraph.isConfirmed(entry) ? CONFIRMED_WEIGHT : NOT_CONFIRMED_WEIGHT;
+    }
+
+    // Отбор лучших кандидатов кучей размера count без сортировки всех кандидатов
+    private static List<Integer> top(Map<Integer, Integer> scores, int count) {
+        Comparator<Map.Entry<Integer, Integer>> ranking = Map.Entry.<Integer, Integer>comparingByValue()
+                .reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<Integer, Integer>> best = new PriorityQueue<>(ranking.reversed());
+        for (Map.Entry<Integer, Integer> score : scores.entrySet()) {
+            best.add(score);
+            if (best.size() > count) {
+                best.poll();
+            }
+        }
+        List<Map.Entry<Integer, Integer>> sorted = new ArrayList<>(best);
+        sorted.sort(ranking);
+        return sorted.stream().map(Map.Entry::getKey).toList();
+    }
+}
@@ -0,0 +1,295 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+import ru.yandex.practicum.filmorate.storage.StreamingStorage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Граф дружбы в памяти.
+ * Строки смежности индексируются id пользователя и хранятся отсортированными массивами int:
+ * исходящая строка содержит записи {@code (friendId << 1) | confirmed}, входящая - id пользователей,
+ * добавивших пользователя в друзья. Строки не изменяются после публикации и отдаются без копирования.
+ * Граф обновляется сервисом пользователей после каждой записи в FRIENDSHIP и USERS.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendshipGraph {
+    private static final int CONFIRMED_BIT = 1;
+    private final StreamingStorage streamingStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BitSet users = new BitSet();
+    private int[][] outgoing = new int[0][];
+    private int[][] incoming = new int[0][];
+
+    @PostConstruct
+    public void rebuild() {
+        BitSet userIds = new BitSet();
+        streamingStorage.streamUsers(user -> userIds.set(user.getId()));
+        int size = userIds.length();
+        int[] outDegrees = new int[size];
+        int[] inDegrees = new int[size];
+        IntPairs edges = new IntPairs();
+        streamingStorage.streamFriendships((userId, friendship) -> {
+            boolean confirmed = FriendshipStatus.CONFIRMED.toString().equals(friendship.getStatus());
+            edges.add(userId, (friendship.getFriendId() << 1) | (confirmed ? CONFIRMED_BIT : 0));
+            outDegrees[userId]++;
+            inDegrees[friendship.getFriendId()]++;
+        });
+
+        int[][] out = new int[size][];
+        int[][] in = new int[size][];
+        for (int userId = 0; userId < size; userId++) {
+            out[userId] = outDegrees[userId] == 0 ? SortedIntArrays.EMPTY : new int[outDegrees[userId]];
+            in[userId] = inDegrees[userId] == 0 ? SortedIntArrays.EMPTY : new int[inDegrees[userId]];
+        }
+        Arrays.fill(outDegrees, 0);
+        Arrays.fill(inDegrees, 0);
+        for (int i = 0; i < edges.size; i++) {
+            int userId = edges.first[i];
+            int friendId = edges.second[i] >>> 1;
+            out[userId][outDegrees[userId]++] = edges.second[i];
+            in[friendId][inDegrees[friendId]++] = userId;
+        }
+        for (int userId = 0; userId < size; userId++) {
+            Arrays.sort(out[userId]);
+            Arrays.sort(in[userId]);
+        }
+
+        lock.writeLock().lock();
+        try {
+            users.clear();
+            users.or(userIds);
+            outgoing = out;
+            incoming = in;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Friendship graph built for {} users and {} friendships", userIds.cardinality(), edges.size);
+    }
+
+    public static int friendId(int entry) {
+        return entry >>> 1;
+    }
+
+    public static boolean isConfirmed(int entry) {
+        return (entry & CONFIRMED_BIT) != 0;
+    }
+
+    /**
+     * Есть ли друг в строке смежности, полученной из {@link #getAdjacency(int)}.
+     */
+    public static boolean containsFriend(int[] adjacency, int friendId) {
+        return indexOf(adjacency, friendId) >= 0;
+    }
+
+    public int[] getUserIds() {
+        lock.readLock().lock();
+        try {
+            return users.stream().toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsUser(int userId) {
+        lock.readLock().lock();
+        try {
+            return userId >= 0 && users.get(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean hasFriend(int userId, int friendId) {
+        return indexOf(getAdjacency(userId), friendId) >= 0;
+    }
+
+    /**
+     * Исходящая строка смежности пользователя: записи {@code (friendId << 1) | confirmed} по возрастанию friendId.
+     */
+    public int[] getAdjacency(int userId) {
+        lock.readLock().lock();
+        try {
+            return row(outgoing, userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Пользователи, добавившие пользователя в друзья, по возрастанию id.
+     */
+    public int[] getFollowers(int userId) {
+        lock.readLock().lock();
+        try {
+            return row(incoming, userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int[] getFriendIds(int userId) {
+        int[] adjacency = getAdjacency(userId);
+        int[] friendIds = new int[adjacency.length];
+        for (int i = 0; i < adjacency.length; i++) {
+            friendIds[i] = friendId(adjacency[i]);
+        }
+        return friendIds;
+    }
+
+    /**
+     * Общие друзья двух пользователей по возрастанию id, найденные слиянием строк смежности.
+     */
+    public int[] getCommonFriends(int userId, int otherId) {
+        int[] first = getAdjacency(userId);
+        int[] second = getAdjacency(otherId);
+        int[] common = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            int firstId = friendId(first[i]);
+            int secondId = friendId(second[j]);
+            if (firstId < secondId) {
+                i++;
+            } else if (firstId > secondId) {
+                j++;
+            } else {
+                common[count++] = firstId;
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, count);
+    }
+
+    public void onUserCreated(int userId) {
+        write(() -> {
+            ensureCapacity(userId);
+            users.set(userId);
+        });
+    }
+
+    public void onUserDeleted(int userId) {
+        write(() -> {
+            if (userId >= outgoing.length) {
+                return;
+            }
+            // дружбы удаляются из базы каскадно вместе с пользователем
+            for (int entry : outgoing[userId]) {
+                int friendId = friendId(entry);
+                incoming[friendId] = SortedIntArrays.remove(incoming[friendId], userId);
+            }
+            for (int followerId : incoming[userId]) {
+                int index = indexOf(outgoing[followerId], userId);
+                outgoing[followerId] = removeAt(outgoing[followerId], index);
+            }
+            outgoing[userId] = SortedIntArrays.EMPTY;
+            incoming[userId] = SortedIntArrays.EMPTY;
+            users.clear(userId);
+        });
+    }
+
+    /**
+     * Добавляет дружбу либо меняет статус уже существующей.
+     */
+    public void onFriendshipChanged(int userId, int friendId, boolean confirmed) {
+        write(() -> {
+            ensureCapacity(Math.max(userId, friendId));
+            int entry = (friendId << 1) | (confirmed ? CONFIRMED_BIT : 0);
+            int index = indexOf(outgoing[userId], friendId);
+            if (index >= 0) {
+                int[] updated = outgoing[userId].clone();
+                updated[index] = entry;
+                outgoing[userId] = updated;
+            } else {
+                outgoing[userId] = SortedIntArrays.add(outgoing[userId], entry);
+                incoming[friendId] = SortedIntArrays.add(incoming[friendId], userId);
+            }
+        });
+    }
+
+    public void onFriendRemoved(int userId, int friendId) {
+        write(() -> {
+            if (Math.max(userId, friendId) >= outgoing.length) {
+                return;
+            }
+            int index = indexOf(outgoing[userId], friendId);
+            if (index >= 0) {
+                outgoing[userId] = removeAt(outgoing[userId], index);
+                incoming[friendId] = SortedIntArrays.remove(incoming[friendId], userId);
+            }
+        });
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureCapacity(int userId) {
+        if (userId < outgoing.length) {
+            return;
+        }
+        int size = Math.max(userId + 1, outgoing.length * 2);
+        int oldSize = outgoing.length;
+        outgoing = Arrays.copyOf(outgoing, size);
+        incoming = Arrays.copyOf(incoming, size);
+        Arrays.fill(outgoing, oldSize, size, SortedIntArrays.EMPTY);
+        Arrays.fill(incoming, oldSize, size, SortedIntArrays.EMPTY);
+    }
+
+    private static int[] row(int[][] rows, int userId) {
+        return userId >= 0 && userId < rows.length ? rows[userId] : SortedIntArrays.EMPTY;
+    }
+
+    // Позиция друга в строке смежности; записи отсортированы по friendId, бит статуса на порядок не влияет
+    private static int indexOf(int[] adjacency, int friendId) {
+        int index = Arrays.binarySearch(adjacency, friendId << 1);
+        if (index >= 0) {
+            return index;
+        }
+        int insertAt = -index - 1;
+        return insertAt < adjacency.length && friendId(adjacency[insertAt]) == friendId ? insertAt : -1;
+    }
+
+    private static int[] removeAt(int[] array, int index) {
+        if (index < 0) {
+            return array;
+        }
+        int[] result = new int[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    // Растущий список пар int без упаковки
+    private static class IntPairs {
+        private int[] first = new int[16];
+        private int[] second = new int[16];
+        private int size;
+
+        void add(int a, int b) {
+            if (size == first.length) {
+                first = Arrays.copyOf(first, size * 2);
+                second = Arrays.copyOf(second, size * 2);
+            }
+            first[size] = a;
+            second[size] = b;
+            size++;
+        }
+    }
+}
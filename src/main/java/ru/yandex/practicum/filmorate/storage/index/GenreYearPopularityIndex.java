@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.StreamingStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Предагрегированные рейтинги популярности фильмов по срезам (жанр, год выпуска), (жанр) и (год выпуска).
+ * Фильм с несколькими жанрами входит в срез каждого своего жанра.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GenreYearPopularityIndex implements FilmChangeListener {
+    // обозначение "любой жанр"/"любой год" в ключе среза; id жанров и годы выпуска всегда больше нуля
+    private static final int ANY = 0;
+    private final FilmStorage filmStorage;
+    private final StreamingStorage streamingStorage;
+    private final Map<Long, RankedFilms> slices = new HashMap<>();
+    private final Map<Integer, FilmEntry> films = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, Integer> likesCounts = filmStorage.getLikesCounts();
+
+        lock.writeLock().lock();
+        try {
+            slices.clear();
+            films.clear();
+            streamingStorage.streamFilms(film ->
+                    addFilm(film.getId(), toEntry(film, likesCounts.getOrDefault(film.getId(), 0))));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Genre/year popularity index built for {} films in {} slices", films.size(), slices.size());
+    }
+
+    public List<Integer> getTop(int count, Integer genreId, Integer year) {
+        long sliceKey = key(genreId == null ? ANY : genreId, year == null ? ANY : year);
+
+        lock.readLock().lock();
+        try {
+            RankedFilms slice = slices.get(sliceKey);
+            return slice == null ? Collections.emptyList() : slice.getTop(count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmCreated(Film film) {
+        write(() -> addFilm(film.getId(), toEntry(film, film.getLikesCount())));
+    }
+
+    @Override
+    public void onFilmUpdated(Film film) {
+        write(() -> {
+            FilmEntry oldEntry = removeFilm(film.getId());
+            int likesCount = oldEntry == null ? film.getLikesCount() : oldEntry.likesCount;
+            addFilm(film.getId(), toEntry(film, likesCount));
+        });
+    }
+
+    @Override
+    public void onFilmDeleted(int filmId) {
+        write(() -> removeFilm(filmId));
+    }
+
+    @Override
+    public void onLikeAdded(int filmId, int userId) {
+        write(() -> changeLikes(filmId, 1));
+    }
+
+    @Override
+    public void onLikeRemoved(int filmId, int userId) {
+        write(() -> changeLikes(filmId, -1));
+    }
+
+    private void changeLikes(int filmId, int delta) {
+        FilmEntry entry = films.get(filmId);
+        if (entry == null) {
+            return;
+        }
+        entry.likesCount = Math.max(entry.likesCount + delta, 0);
+        for (long sliceKey : sliceKeys(entry)) {
+            slices.get(sliceKey).set(filmId, entry.likesCount);
+        }
+    }
+
+    private void addFilm(int filmId, FilmEntry entry) {
+        films.put(filmId, entry);
+        for (long sliceKey : sliceKeys(entry)) {
+            slices.computeIfAbsent(sliceKey, k -> new RankedFilms()).set(filmId, entry.likesCount);
+        }
+    }
+
+    private FilmEntry removeFilm(int filmId) {
+        FilmEntry entry = films.remove(filmId);
+        if (entry == null) {
+            return null;
+        }
+        for (long sliceKey : sliceKeys(entry)) {
+            RankedFilms slice = slices.get(sliceKey);
+            slice.remove(filmId);
+            if (slice.size() == 0) {
+                slices.remove(sliceKey);
+            }
+        }
+        return entry;
+    }
+
+    private long[] sliceKeys(FilmEntry entry) {
+        long[] keys = new long[entry.genreIds.length * 2 + 1];
+        keys[0] = key(ANY, entry.year);
+        for (int i = 0; i < entry.genreIds.length; i++) {
+            keys[i * 2 + 1] = key(entry.genreIds[i], entry.year);
+            keys[i * 2 + 2] = key(entry.genreIds[i], ANY);
+        }
+        return keys;
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static FilmEntry toEntry(Film film, int likesCount) {
+        int[] genreIds = film.getGenres().stream()
+                .mapToInt(Genre::getId)
+                .distinct()
+                .toArray();
+        return new FilmEntry(film.getReleaseDate().getYear(), genreIds, likesCount);
+    }
+
+    private static long key(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    private static final class FilmEntry {
+        private final int year;
+        private final int[] genreIds;
+        private int likesCount;
+
+        private FilmEntry(int year, int[] genreIds, int likesCount) {
+            this.year = year;
+            this.genreIds = genreIds;
+            this.likesCount = likesCount;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.StreamingStorage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Лайки в памяти в двух направлениях: фильмы пользователя и пользователи фильма.
+ * Множества хранятся отсортированными массивами, которые не изменяются после публикации,
+ * поэтому возвращаются без копирования.
+ * Обновляется раньше остальных получателей изменений, чтобы они видели уже примененный лайк.
+ * Структуры, зависящие от набора фильмов пользователя, получают изменения через {@link UserFilmsListener}
+ * под той же блокировкой, что и само изменение, поэтому одновременные лайки одного пользователя
+ * сообщаются им строго по очереди.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class LikeMatrix implements FilmChangeListener {
+    private final StreamingStorage streamingStorage;
+    private final Map<Integer, int[]> filmsByUser = new HashMap<>();
+    private final Map<Integer, int[]> usersByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<UserFilmsListener> userFilmsListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Получатель изменения набора фильмов пользователя.
+     */
+    public interface UserFilmsListener {
+        /**
+         * Вызывается под блокировкой записи LikeMatrix, только если лайк действительно добавлен или удален.
+         *
+         * @param otherFilmIds остальные фильмы, которые пользователь лайкнул до изменения
+         * @param delta 1 при добавлении лайка, -1 при удалении
+         */
+        void onUserFilmsChanged(int filmId, int[] otherFilmIds, int delta);
+    }
+
+    public void addUserFilmsListener(UserFilmsListener listener) {
+        userFilmsListeners.add(listener);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, List<Integer>> userFilms = new HashMap<>();
+        Map<Integer, List<Integer>> filmUsers = new HashMap<>();
+        streamingStorage.streamFilmLikes(like -> {
+            userFilms.computeIfAbsent(like.getUserId(), k -> new ArrayList<>()).add(like.getFilmId());
+            filmUsers.computeIfAbsent(like.getFilmId(), k -> new ArrayList<>()).add(like.getUserId());
+        });
+
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            usersByFilm.clear();
+            userFilms.forEach((userId, filmIds) -> filmsByUser.put(userId, toSortedArray(filmIds)));
+            filmUsers.forEach((filmId, userIds) -> usersByFilm.put(filmId, toSortedArray(userIds)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Like matrix built for {} users and {} films", filmsByUser.size(), usersByFilm.size());
+    }
+
+    public int[] getUserFilms(int userId) {
+        lock.readLock().lock();
+        try {
+            return filmsByUser.getOrDefault(userId, SortedIntArrays.EMPTY);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int[] getFilmUsers(int filmId) {
+        lock.readLock().lock();
+        try {
+            return usersByFilm.getOrDefault(filmId, SortedIntArrays.EMPTY);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Снимок пользователей по всем фильмам для массовой обработки.
+     */
+    public Map<Integer, int[]> getUsersByFilm() {
+        lock.readLock().lock();
+        try {
+            return new HashMap<>(usersByFilm);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Снимок фильмов по всем пользователям для массовой обработки.
+     */
+    public Map<Integer, int[]> getFilmsByUser() {
+        lock.readLock().lock();
+        try {
+            return new HashMap<>(filmsByUser);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmDeleted(int filmId) {
+        write(() -> {
+            int[] userIds = usersByFilm.remove(filmId);
+            if (userIds != null) {
+                for (int userId : userIds) {
+                    update(filmsByUser, userId, SortedIntArrays.remove(filmsByUser.get(userId), filmId));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onLikeAdded(int filmId, int userId) {
+        write(() -> {
+            int[] userFilms = filmsByUser.getOrDefault(userId, SortedIntArrays.EMPTY);
+            if (SortedIntArrays.contains(userFilms, filmId)) {
+                return;
+            }
+            update(filmsByUser, userId, SortedIntArrays.add(userFilms, filmId));
+            update(usersByFilm, filmId, SortedIntArrays.add(usersByFilm.getOrDefault(filmId, SortedIntArrays.EMPTY), userId));
+            userFilmsListeners.forEach(listener -> listener.onUserFilmsChanged(filmId, userFilms, 1));
+        });
+    }
+
+    @Override
+    public void onLikeRemoved(int filmId, int userId) {
+        write(() -> {
+            int[] userFilms = filmsByUser.getOrDefault(userId, SortedIntArrays.EMPTY);
+            if (!SortedIntArrays.contains(userFilms, filmId)) {
+                return;
+            }
+            int[] otherFilms = SortedIntArrays.remove(userFilms, filmId);
+            update(filmsByUser, userId, otherFilms);
+            update(usersByFilm, filmId, SortedIntArrays.remove(usersByFilm.getOrDefault(filmId, SortedIntArrays.EMPTY), userId));
+            userFilmsListeners.forEach(listener -> listener.onUserFilmsChanged(filmId, otherFilms, -1));
+        });
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void update(Map<Integer, int[]> sets, int key, int[] values) {
+        if (values.length == 0) {
+            sets.remove(key);
+        } else {
+            sets.put(key, values);
+        }
+    }
+
+    private static int[] toSortedArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рейтинг фильмов по количеству лайков в памяти.
+ * Строится из счетчиков лайков при старте и обновляется при каждом изменении лайков.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularityLeaderboard implements FilmChangeListener {
+    private final FilmStorage filmStorage;
+    private final RankedFilms ranking = new RankedFilms();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void rebuild() {
+        filmStorage.rebuildLikesCounts();
+        Map<Integer, Integer> likesCounts = filmStorage.getLikesCounts();
+
+        lock.writeLock().lock();
+        try {
+            ranking.clear();
+            likesCounts.forEach(ranking::set);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Popularity leaderboard built for {} films", likesCounts.size());
+    }
+
+    public List<Integer> getTop(int count) {
+        lock.readLock().lock();
+        try {
+            return ranking.getTop(count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getLikesCount(int filmId) {
+        lock.readLock().lock();
+        try {
+            return ranking.getScore(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmCreated(Film film) {
+        // лайк, поставленный сразу после создания, мог быть учтен раньше этого уведомления
+        write(() -> {
+            if (!ranking.contains(film.getId())) {
+                ranking.set(film.getId(), film.getLikesCount());
+            }
+        });
+    }
+
+    @Override
+    public void onFilmDeleted(int filmId) {
+        write(() -> ranking.remove(filmId));
+    }
+
+    @Override
+    public void onLikeAdded(int filmId, int userId) {
+        write(() -> ranking.add(filmId, 1));
+    }
+
+    @Override
+    public void onLikeRemoved(int filmId, int userId) {
+        write(() -> {
+            if (ranking.contains(filmId)) {
+                ranking.add(filmId, -1);
+            }
+        });
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
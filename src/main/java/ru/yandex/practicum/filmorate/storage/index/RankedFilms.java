@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Набор id фильмов, упорядоченный по неотрицательному счету по убыванию, при равенстве - по id по возрастанию.
+ * Класс не потокобезопасен, синхронизация остается на владельце.
+ */
+public class RankedFilms {
+    private final Map<Integer, Integer> scores = new HashMap<>();
+    // ключ: старшие 32 бита - инвертированный счет, младшие - id фильма
+    private final TreeSet<Long> order = new TreeSet<>();
+
+    public void set(int filmId, int score) {
+        Integer oldScore = scores.put(filmId, Math.max(score, 0));
+        if (oldScore != null) {
+            order.remove(key(filmId, oldScore));
+        }
+        order.add(key(filmId, Math.max(score, 0)));
+    }
+
+    public void add(int filmId, int delta) {
+        set(filmId, scores.getOrDefault(filmId, 0) + delta);
+    }
+
+    public void remove(int filmId) {
+        Integer oldScore = scores.remove(filmId);
+        if (oldScore != null) {
+            order.remove(key(filmId, oldScore));
+        }
+    }
+
+    public boolean contains(int filmId) {
+        return scores.containsKey(filmId);
+    }
+
+    public int getScore(int filmId) {
+        return scores.getOrDefault(filmId, 0);
+    }
+
+    public int size() {
+        return scores.size();
+    }
+
+    public void clear() {
+        scores.clear();
+        order.clear();
+    }
+
+    public List<Integer> getTop(int count) {
+        List<Integer> top = new ArrayList<>(Math.max(Math.min(count, scores.size()), 0));
+        Iterator<Long> iterator = order.iterator();
+        while (top.size() < count && iterator.hasNext()) {
+            top.add((int) (long) iterator.next());
+        }
+        return top;
+    }
+
+    private static long key(int filmId, int score) {
+        return ((long) (Integer.MAX_VALUE - score) << 32) | (filmId & 0xFFFFFFFFL);
+    }
+}
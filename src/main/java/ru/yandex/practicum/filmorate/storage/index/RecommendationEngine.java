@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Рекомендации фильмов по лайкам пользователей с наибольшим пересечением лайков.
+ * Фильм получает вес соседа, равный размеру пересечения, от каждого соседа, которому он понравился.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecommendationEngine {
+    private static final int NEIGHBOURS_COUNT = 10;
+    private final LikeMatrix likeMatrix;
+
+    public List<Integer> recommend(int userId) {
+        int[] likedFilms = likeMatrix.getUserFilms(userId);
+        if (likedFilms.length == 0) {
+            return Collections.emptyList();
+        }
+
+        Map<Integer, Integer> overlaps = new HashMap<>();
+        for (int filmId : likedFilms) {
+            for (int otherUserId : likeMatrix.getFilmUsers(filmId)) {
+                if (otherUserId != userId) {
+                    overlaps.merge(otherUserId, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Map.Entry<Integer, Integer>> neighbours = overlaps.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(NEIGHBOURS_COUNT)
+                .toList();
+
+        RankedFilms ranking = new RankedFilms();
+        for (Map.Entry<Integer, Integer> neighbour : neighbours) {
+            for (int filmId : likeMatrix.getUserFilms(neighbour.getKey())) {
+                if (!SortedIntArrays.contains(likedFilms, filmId)) {
+                    ranking.add(filmId, neighbour.getValue());
+                }
+            }
+        }
+        return ranking.getTop(ranking.size());
+    }
+}
@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Инвертированный индекс для поиска подстроки без учета регистра.
+ * Текст разбивается на слова, каждое слово - на n-граммы длиной до {@value #GRAM_SIZE} символов.
+ * По n-граммам запроса отбираются кандидаты, которые затем проверяются на вхождение всей строки.
+ * Не потокобезопасен.
+ */
+public class TextIndex {
+    private static final int GRAM_SIZE = 3;
+    private final Map<Integer, String> texts = new HashMap<>();
+    private final Map<String, Set<Integer>> postings = new HashMap<>();
+
+    public void put(int id, String text) {
+        remove(id);
+        String normalized = normalize(text);
+        texts.put(id, normalized);
+        for (String gram : indexGrams(normalized)) {
+            postings.computeIfAbsent(gram, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    public void remove(int id) {
+        String text = texts.remove(id);
+        if (text == null) {
+            return;
+        }
+        for (String gram : indexGrams(text)) {
+            Set<Integer> ids = postings.get(gram);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    public Set<Integer> find(String query) {
+        String normalized = normalize(query);
+        Set<Integer> result = new HashSet<>();
+        for (int id : candidates(normalized)) {
+            if (texts.get(id).contains(normalized)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return texts.size();
+    }
+
+    public void clear() {
+        texts.clear();
+        postings.clear();
+    }
+
+    private Set<Integer> candidates(String query) {
+        List<Set<Integer>> lists = new ArrayList<>();
+        for (String gram : queryGrams(query)) {
+            Set<Integer> ids = postings.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            lists.add(ids);
+        }
+        // запрос без букв и цифр отбирает кандидатов только проверкой вхождения
+        if (lists.isEmpty()) {
+            return texts.keySet();
+        }
+
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Integer> result = new HashSet<>(lists.getFirst());
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private static Set<String> indexGrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (String token : tokenize(text)) {
+            for (int size = 1; size <= GRAM_SIZE; size++) {
+                for (int i = 0; i + size <= token.length(); i++) {
+                    grams.add(token.substring(i, i + size));
+                }
+            }
+        }
+        return grams;
+    }
+
+    private static Set<String> queryGrams(String query) {
+        Set<String> grams = new HashSet<>();
+        for (String token : tokenize(query)) {
+            if (token.length() <= GRAM_SIZE) {
+                grams.add(token);
+                continue;
+            }
+            for (int i = 0; i + GRAM_SIZE <= token.length(); i++) {
+                grams.add(token.substring(i, i + GRAM_SIZE));
+            }
+        }
+        return grams;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -20,6 +20,7 @@ CREATE TABLE IF NOT EXISTS FILM
     release_date date    NOT NULL,
     duration     integer NOT NULL,
     rating_id    integer NOT NULL,
+    likes_count  integer DEFAULT 0 NOT NULL,
     CONSTRAINT name_not_blank CHECK (name <> ''),
     CONSTRAINT positive_duration CHECK (duration > 0)
 );
@@ -27,7 +28,8 @@ CREATE TABLE IF NOT EXISTS FILM
 CREATE TABLE IF NOT EXISTS FILM_LIKE
 (
     film_id integer NOT NULL,
-    user_id integer NOT NULL
+    user_id integer NOT NULL,
+    PRIMARY KEY (film_id, user_id)
 );
 
 CREATE TABLE IF NOT EXISTS GENRE
@@ -88,7 +90,7 @@ CREATE TABLE IF NOT EXISTS film_director
 
 CREATE TABLE IF NOT EXISTS REVIEW (
     review_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    content varchar(10000) NOT NULL,
+    content varbinary(40001) NOT NULL,
     is_positive boolean NOT NULL,
     user_id integer NOT NULL,
     film_id integer NOT NULL,
@@ -98,7 +100,8 @@ CREATE TABLE IF NOT EXISTS REVIEW (
 CREATE TABLE IF NOT EXISTS "REVIEW_LIKE" (
     review_id integer NOT NULL,
     user_id integer NOT NULL,
-    is_positive boolean NOT NULL
+    is_positive boolean NOT NULL,
+    PRIMARY KEY (review_id, user_id)
 );
 
 CREATE TABLE IF NOT EXISTS FEED (
@@ -144,12 +147,16 @@ ALTER TABLE feed ADD FOREIGN KEY (user_id) REFERENCES USERS (user_id) ON DELETE
 
 CREATE INDEX IF NOT EXISTS IDX_FRIENDSHIP ON FRIENDSHIP(user_id, friend_id);
 
-CREATE INDEX IF NOT EXISTS IDX_REVIEW_LIKE ON REVIEW_LIKE(review_id, user_id);
-
 CREATE INDEX IF NOT EXISTS IDX_REVIEW ON REVIEW(film_id, user_id);
 
+CREATE INDEX IF NOT EXISTS IDX_REVIEW_FILM_USEFUL ON REVIEW(film_id, useful DESC, review_id);
+
+CREATE INDEX IF NOT EXISTS IDX_REVIEW_USEFUL ON REVIEW(useful DESC, review_id);
+
 CREATE INDEX IF NOT EXISTS IDX_FILM_DIRECTOR ON FILM_DIRECTOR(film_id, director_id);
 
 CREATE INDEX IF NOT EXISTS IDX_FILM_GENRE ON FILM_GENRE(film_id, genre_id);
 
-CREATE INDEX IF NOT EXISTS IDX_FILM_LIKE ON FILM_LIKE(film_id, user_id);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS IDX_FILM_LIKES_COUNT ON FILM(likes_count DESC, film_id);
+
+CREATE INDEX IF NOT EXISTS IDX_FEED_USER_EVENT ON FEED(user_id, event_id DESC);
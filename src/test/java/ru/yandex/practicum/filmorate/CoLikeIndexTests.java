@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeMatrix;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoLikeIndexTests {
+
+    @Test
+    public void shouldMatchRebuildAfterIncrementalUpdates() {
+        LikeMatrix likeMatrix = new LikeMatrix(null);
+        CoLikeIndex index = new CoLikeIndex(likeMatrix);
+        likeMatrix.onLikeAdded(1, 1);
+        likeMatrix.onLikeAdded(2, 1);
+        likeMatrix.onLikeAdded(3, 1);
+        likeMatrix.onLikeAdded(1, 2);
+        likeMatrix.onLikeAdded(3, 2);
+        likeMatrix.onLikeAdded(2, 3);
+        //повторный лайк не меняет пары
+        likeMatrix.onLikeAdded(2, 3);
+
+        assertThat(index.getSimilar(1, 10)).containsExactly(3, 2);
+        assertThat(index.getSimilar(2, 1)).containsExactly(1);
+        assertThat(index.getSimilar(4, 10)).isEmpty();
+
+        likeMatrix.onLikeRemoved(3, 2);
+        //повторное удаление не меняет пары
+        likeMatrix.onLikeRemoved(3, 2);
+        assertThat(index.getSimilar(1, 10)).containsExactly(2, 3);
+
+        index.rebuild();
+        assertThat(index.getSimilar(1, 10)).containsExactly(2, 3);
+        assertThat(index.getSimilar(3, 10)).containsExactly(1, 2);
+
+        likeMatrix.onFilmDeleted(2);
+        index.onFilmDeleted(2);
+        assertThat(index.getSimilar(1, 10)).containsExactly(3);
+        assertThat(index.getSimilar(2, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.buffer.FeedRingBuffer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedRingBufferTests {
+
+    @Test
+    public void shouldRejectWhenFullAndReuseSlotsAfterDrain() {
+        FeedRingBuffer<Integer> ring = new FeedRingBuffer<>(3);
+        assertThat(ring.capacity()).isEqualTo(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(ring.offer(i)).isEqualTo(i);
+        }
+        assertThat(ring.offer(4)).isEqualTo(-1);
+
+        List<Integer> drained = new ArrayList<>();
+        assertThat(ring.drainTo(drained, 3)).isEqualTo(3);
+        assertThat(drained).containsExactly(0, 1, 2);
+        assertThat(ring.getHead()).isEqualTo(3);
+
+        assertThat(ring.offer(4)).isEqualTo(4);
+        assertThat(ring.offer(5)).isEqualTo(5);
+        assertThat(ring.size()).isEqualTo(3);
+
+        drained.clear();
+        ring.drainTo(drained, 10);
+        assertThat(drained).containsExactly(3, 4, 5);
+        assertThat(ring.size()).isZero();
+    }
+
+    @Test
+    public void shouldKeepOrderOfEachProducer() throws InterruptedException {
+        int producers = 4;
+        int itemsPerProducer = 10_000;
+        FeedRingBuffer<int[]> ring = new FeedRingBuffer<>(64);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < itemsPerProducer; i++) {
+                    while (ring.offer(new int[]{producer, i}) < 0) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        Map<Integer, Integer> lastByProducer = new HashMap<>();
+        List<int[]> batch = new ArrayList<>();
+        int received = 0;
+        while (received < producers * itemsPerProducer) {
+            batch.clear();
+            ring.drainTo(batch, 16);
+            for (int[] item : batch) {
+                int previous = lastByProducer.getOrDefault(item[0], -1);
+                assertThat(item[1]).isEqualTo(previous + 1);
+                lastByProducer.put(item[0], item[1]);
+            }
+            received += batch.size();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(ring.size()).isZero();
+    }
+}
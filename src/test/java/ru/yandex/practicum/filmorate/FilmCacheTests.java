@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCacheProperties;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FilmCacheTests {
+
+    @Test
+    public void shouldReturnCopiesAndApplyWrites() {
+        FilmCache cache = new FilmCache(new FilmCacheProperties());
+        cache.put(film(1));
+
+        // лайки не копируются при каждом чтении и защищены от изменения
+        Film cached = cache.get(1);
+        assertThat(cache.get(1).getLikes()).isSameAs(cached.getLikes());
+        assertThatThrownBy(() -> cached.getLikes().add(100)).isInstanceOf(UnsupportedOperationException.class);
+
+        cache.addLike(1, 5);
+        assertThat(cache.get(1).getLikes()).containsExactly(5);
+        assertThat(cached.getLikes()).isEmpty();
+        assertThat(cache.contains(1)).isTrue();
+
+        cache.evict(1);
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.contains(1)).isFalse();
+        assertThat(cache.getHits()).isEqualTo(3);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRejectLoadStartedBeforeWrite() {
+        FilmCache cache = new FilmCache(new FilmCacheProperties());
+        long stamp = cache.stamp(1);
+        cache.evict(1);
+
+        cache.load(film(1), stamp);
+        assertThat(cache.get(1)).isNull();
+
+        cache.load(film(1), cache.stamp(1));
+        assertThat(cache.get(1)).isNotNull();
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedFilms() {
+        FilmCacheProperties properties = new FilmCacheProperties();
+        properties.setMaxSize(3);
+        FilmCache cache = new FilmCache(properties);
+        cache.put(film(1));
+        cache.put(film(2));
+        cache.get(1);
+        cache.put(film(3));
+        cache.put(film(4));
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.contains(1)).isTrue();
+        assertThat(cache.contains(2)).isFalse();
+    }
+
+    private static Film film(int id) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName("Film " + id);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setMpa(new Mpa(1, "G"));
+        return film;
+    }
+}
@@ -6,17 +6,30 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.dto.user.FeedDto;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.buffer.FeedPipelineProperties;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBehindProperties;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCacheProperties;
 import ru.yandex.practicum.filmorate.storage.database.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.database.StreamingDbStorage;
+import ru.yandex.practicum.filmorate.storage.database.FeedEventPipeline;
 import ru.yandex.practicum.filmorate.storage.database.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.database.UserDbStorage;
 import ru.yandex.practicum.filmorate.storage.database.mapper.*;
+import ru.yandex.practicum.filmorate.storage.index.PopularityLeaderboard;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -25,11 +38,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 @JdbcTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({FilmDbStorage.class, UserDbStorage.class, UserRowMapper.class, FilmRowMapper.class,
-        GenreRowMapper.class, MpaRowMapper.class, DirectorDbStorage.class, DirectorRowMapper.class})
+@Import({FilmDbStorage.class, FilmCache.class, FilmCacheProperties.class, LikeWriteBuffer.class, LikeWriteBehindProperties.class, FeedEventPipeline.class, FeedPipelineProperties.class, UserDbStorage.class, UserRowMapper.class, FilmRowMapper.class,
+        GenreRowMapper.class, MpaRowMapper.class, DirectorDbStorage.class, DirectorRowMapper.class,
+        StreamingDbStorage.class})
 public class FilmIntegrationTests {
     private final FilmDbStorage filmDbStorage;
     private final UserDbStorage userDbStorage;
+    private final DirectorDbStorage directorDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final StreamingDbStorage streamingDbStorage;
 
 
     @Test
@@ -65,6 +82,67 @@ public class FilmIntegrationTests {
         assertThat(film.getMpa().getId()).isEqualTo(1);
     }
 
+    @Test
+    public void getFilmWithAllAssociations() {
+        Director director1 = directorDbStorage.createDirector(new Director(null, "director1"));
+        Director director2 = directorDbStorage.createDirector(new Director(null, "director2"));
+        Film film = prepareFilms().getFirst();
+        film.setGenres(Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+        film.setDirectors(Set.of(director1, director2));
+        Film dbFilm = filmDbStorage.createFilm(film);
+
+        User user1 = userDbStorage.createUser(prepareUser());
+        User user2 = userDbStorage.createUser(prepareUser());
+        User user3 = userDbStorage.createUser(prepareUser());
+        filmDbStorage.addLike(dbFilm.getId(), user1.getId());
+        filmDbStorage.addLike(dbFilm.getId(), user2.getId());
+        filmDbStorage.addLike(dbFilm.getId(), user3.getId());
+
+        Film loaded = filmDbStorage.getFilmById(dbFilm.getId());
+        assertThat(loaded.getGenres()).extracting(Genre::getId).containsExactlyInAnyOrder(1, 2);
+        assertThat(loaded.getDirectors()).extracting(Director::getId)
+                .containsExactlyInAnyOrder(director1.getId(), director2.getId());
+        assertThat(loaded.getLikes()).containsExactlyInAnyOrder(user1.getId(), user2.getId(), user3.getId());
+
+        List<Film> films = filmDbStorage.getAllFilms();
+        assertThat(films).hasSize(1);
+        assertThat(films.getFirst().getLikesCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void getFilmsPage() {
+        Film film1 = filmDbStorage.createFilm(prepareFilms().getFirst());
+        Film film2 = filmDbStorage.createFilm(prepareFilms().getLast());
+        Film film3 = filmDbStorage.createFilm(prepareFilms().getFirst());
+
+        assertThat(filmDbStorage.getFilmsPage(0, 2)).extracting(Film::getId)
+                .containsExactly(film1.getId(), film2.getId());
+        assertThat(filmDbStorage.getFilmsPage(film2.getId(), 2)).extracting(Film::getId)
+                .containsExactly(film3.getId());
+    }
+
+    @Test
+    public void exportFilmsAndLikes() {
+        Director director = directorDbStorage.createDirector(new Director(null, "director"));
+        Film film1 = prepareFilms().getFirst();
+        film1.setGenres(Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+        film1.setDirectors(Set.of(director));
+        film1 = filmDbStorage.createFilm(film1);
+        Film film2 = filmDbStorage.createFilm(prepareFilms().getLast());
+        User user = userDbStorage.createUser(prepareUser());
+        filmDbStorage.addLike(film2.getId(), user.getId());
+
+        List<Film> exported = new ArrayList<>();
+        streamingDbStorage.streamFilms(exported::add);
+        assertThat(exported).extracting(Film::getId).containsExactly(film1.getId(), film2.getId());
+        assertThat(exported.getFirst().getGenres()).hasSize(2);
+        assertThat(exported.getFirst().getDirectors()).extracting(Director::getId).containsExactly(director.getId());
+
+        List<Integer> likedFilms = new ArrayList<>();
+        streamingDbStorage.streamFilmLikes(like -> likedFilms.add(like.getFilmId()));
+        assertThat(likedFilms).containsExactly(film2.getId());
+    }
+
     @Test
     public void updateFilm() {
         List<Film> preparedFilms = prepareFilms();
@@ -90,13 +168,101 @@ public class FilmIntegrationTests {
 
         filmDbStorage.addLike(dbFilm.getId(), dbUser.getId());
 
-        List<Integer> likes = filmDbStorage.getFilmLikes(dbFilm.getId());
-        assertThat(likes).hasSize(1);
-        assertThat(likes).contains(dbUser.getId());
+        assertThat(filmDbStorage.hasLike(dbFilm.getId(), dbUser.getId())).isTrue();
+        assertThat(filmDbStorage.getFilmById(dbFilm.getId()).getLikes()).containsExactly(dbUser.getId());
 
-        filmDbStorage.deleteLike(dbFilm.getId(), dbUser.getId());
-        List<Integer> likes2 = filmDbStorage.getFilmLikes(dbFilm.getId());
-        assertThat(likes2).isEmpty();
+        assertThat(filmDbStorage.deleteLike(dbFilm.getId(), dbUser.getId())).isTrue();
+        assertThat(filmDbStorage.hasLike(dbFilm.getId(), dbUser.getId())).isFalse();
+        assertThat(filmDbStorage.getFilmById(dbFilm.getId()).getLikes()).isEmpty();
+        assertThat(filmDbStorage.deleteLike(dbFilm.getId(), dbUser.getId())).isFalse();
+    }
+
+    @Test
+    public void likesCountIsMaintainedAndRebuilt() {
+        Film film = filmDbStorage.createFilm(prepareFilms().getFirst());
+        User user1 = userDbStorage.createUser(prepareUser());
+        User user2 = userDbStorage.createUser(prepareUser());
+        User user3 = userDbStorage.createUser(prepareUser());
+
+        assertThat(filmDbStorage.addLike(film.getId(), user1.getId())).isTrue();
+        assertThat(filmDbStorage.addLike(film.getId(), user1.getId())).isFalse();
+        // повторный лайк не попадает в ленту
+        assertThat(userDbStorage.getUserFeed(user1.getId())).hasSize(1);
+        filmDbStorage.addLike(film.getId(), user2.getId());
+        filmDbStorage.addLike(film.getId(), user3.getId());
+        assertThat(getLikesCount(film.getId())).isEqualTo(3);
+
+        filmDbStorage.deleteLike(film.getId(), user1.getId());
+        assertThat(getLikesCount(film.getId())).isEqualTo(2);
+
+        userDbStorage.deleteUserById(user2.getId());
+        assertThat(getLikesCount(film.getId())).isEqualTo(1);
+
+        jdbcTemplate.update("UPDATE FILM SET LIKES_COUNT = 100 WHERE FILM_ID = ?", film.getId());
+        assertThat(filmDbStorage.rebuildLikesCounts()).isEqualTo(1);
+        assertThat(getLikesCount(film.getId())).isEqualTo(1);
+    }
+
+    @Test
+    public void applyLikesInBatch() {
+        Film film1 = filmDbStorage.createFilm(prepareFilms().getFirst());
+        Film film2 = filmDbStorage.createFilm(prepareFilms().getLast());
+        User user1 = userDbStorage.createUser(prepareUser());
+        User user2 = userDbStorage.createUser(prepareUser());
+        filmDbStorage.addLike(film2.getId(), user1.getId());
+
+        Set<FilmLike> applied = filmDbStorage.applyLikes(
+                List.of(new FilmLike(film1.getId(), user1.getId()), new FilmLike(film1.getId(), user2.getId()),
+                        new FilmLike(film2.getId(), user1.getId())),
+                List.of(new FilmLike(film2.getId(), user1.getId() + 1000), new FilmLike(film2.getId(), user2.getId())));
+
+        assertThat(applied).containsExactlyInAnyOrder(new FilmLike(film1.getId(), user1.getId()),
+                new FilmLike(film1.getId(), user2.getId()));
+        assertThat(getLikesCount(film1.getId())).isEqualTo(2);
+        assertThat(getLikesCount(film2.getId())).isEqualTo(1);
+        assertThat(filmDbStorage.getFilmById(film1.getId()).getLikes()).containsExactlyInAnyOrder(user1.getId(), user2.getId());
+        assertThat(userDbStorage.getUserFeed(user2.getId())).hasSize(1);
+
+        applied = filmDbStorage.applyLikes(List.of(), List.of(new FilmLike(film2.getId(), user1.getId())));
+        assertThat(applied).containsExactly(new FilmLike(film2.getId(), user1.getId()));
+        assertThat(getLikesCount(film2.getId())).isZero();
+
+        assertThat(filmDbStorage.getExistingFilmIds(List.of(film1.getId(), film2.getId() + 1000)))
+                .containsExactly(film1.getId());
+        assertThat(userDbStorage.getExistingUserIds(List.of(user2.getId(), user2.getId() + 1000)))
+                .containsExactly(user2.getId());
+    }
+
+    @Test
+    public void flushBufferedLikes() {
+        Film film = filmDbStorage.createFilm(prepareFilms().getFirst());
+        User user1 = userDbStorage.createUser(prepareUser());
+        User user2 = userDbStorage.createUser(prepareUser());
+        filmDbStorage.addLike(film.getId(), user1.getId());
+
+        LikeWriteBehindProperties properties = new LikeWriteBehindProperties();
+        properties.setEnabled(true);
+        LikeWriteBuffer buffer = new LikeWriteBuffer(properties, filmDbStorage);
+
+        assertThat(buffer.submit(film.getId(), user1.getId(), LikeOperation.ADD)).isFalse();
+        assertThat(buffer.submit(film.getId(), user2.getId(), LikeOperation.ADD)).isTrue();
+        assertThat(buffer.submit(film.getId(), user2.getId(), LikeOperation.REMOVE)).isTrue();
+        assertThat(buffer.submit(film.getId(), user2.getId(), LikeOperation.REMOVE)).isFalse();
+        assertThat(buffer.submit(film.getId(), user2.getId(), LikeOperation.ADD)).isTrue();
+        assertThat(buffer.getPendingOperation(film.getId(), user2.getId())).isEqualTo(LikeOperation.ADD);
+        assertThat(buffer.getQueueDepth()).isEqualTo(3);
+
+        Film overlaid = filmDbStorage.getFilmById(film.getId());
+        buffer.applyPendingLikes(overlaid);
+        assertThat(overlaid.getLikes()).containsExactlyInAnyOrder(user1.getId(), user2.getId());
+        assertThat(getLikesCount(film.getId())).isEqualTo(1);
+
+        buffer.flush();
+        assertThat(buffer.getQueueDepth()).isZero();
+        assertThat(getLikesCount(film.getId())).isEqualTo(2);
+        assertThat(filmDbStorage.hasLike(film.getId(), user1.getId())).isTrue();
+        assertThat(filmDbStorage.hasLike(film.getId(), user2.getId())).isTrue();
+        assertThat(userDbStorage.getUserFeed(user2.getId())).hasSize(3);
     }
 
     @Test
@@ -130,13 +296,29 @@ public class FilmIntegrationTests {
 
         filmDbStorage.addLike(film2.getId(), user3.getId());
 
-        List<Film> top = filmDbStorage.getMostPopular(3);
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard(filmDbStorage);
+        leaderboard.rebuild();
+        List<Film> top = filmDbStorage.getFilmsByIds(leaderboard.getTop(3));
         assertThat(top).hasSize(3);
         assertThat(top.getFirst().getId()).isEqualTo(film6.getId());
         assertThat(top.get(1).getId()).isEqualTo(film3.getId());
         assertThat(top.getLast().getId()).isEqualTo(film1.getId());
     }
 
+    @Test
+    public void getFilmsByIdsKeepsRequestedOrder() {
+        Film film1 = filmDbStorage.createFilm(prepareFilms().getFirst());
+        Film film2 = filmDbStorage.createFilm(prepareFilms().getLast());
+        User user = userDbStorage.createUser(prepareUser());
+        filmDbStorage.addLike(film2.getId(), user.getId());
+
+        List<Film> films = filmDbStorage.getFilmsByIds(List.of(film2.getId(), film1.getId()));
+        assertThat(films).extracting(Film::getId).containsExactly(film2.getId(), film1.getId());
+        assertThat(filmDbStorage.getLikesCounts())
+                .containsEntry(film1.getId(), 0)
+                .containsEntry(film2.getId(), 1);
+    }
+
     @Test
     public void deleteFilmById() {
         Film film = filmDbStorage.createFilm(prepareFilms().getFirst());
@@ -197,6 +379,10 @@ public class FilmIntegrationTests {
         return List.of(film, film2);
     }
 
+    private int getLikesCount(int filmId) {
+        return jdbcTemplate.queryForObject("SELECT LIKES_COUNT FROM FILM WHERE FILM_ID = ?", Integer.class, filmId);
+    }
+
     private User prepareUser() {
         User user = new User();
         user.setEmail("ex@ex.ru");
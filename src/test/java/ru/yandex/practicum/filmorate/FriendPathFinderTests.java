@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.FriendPathFinder;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendPathFinderTests {
+
+    @Test
+    public void shouldFindShortestFriendChain() {
+        FriendshipGraph graph = new FriendshipGraph(null);
+        for (int userId = 1; userId <= 8; userId++) {
+            graph.onUserCreated(userId);
+        }
+        // длинная цепочка 1 -> 2 -> 3 -> 4 -> 5 -> 6 и короткая 1 -> 7 -> 8 -> 6
+        for (int userId = 1; userId < 6; userId++) {
+            graph.onFriendshipChanged(userId, userId + 1, false);
+        }
+        graph.onFriendshipChanged(1, 7, false);
+        graph.onFriendshipChanged(7, 8, false);
+        graph.onFriendshipChanged(8, 6, false);
+        FriendPathFinder finder = new FriendPathFinder(graph);
+
+        assertThat(finder.findPath(1, 6, 6)).containsExactly(1, 7, 8, 6);
+        assertThat(finder.findPath(1, 6, 3)).containsExactly(1, 7, 8, 6);
+        assertThat(finder.findPath(1, 6, 2)).isNull();
+        assertThat(finder.findPath(2, 5, 6)).containsExactly(2, 3, 4, 5);
+        assertThat(finder.findPath(1, 2, 1)).containsExactly(1, 2);
+        assertThat(finder.findPath(3, 3, 1)).containsExactly(3);
+        // дружба направленная: обратной цепочки нет
+        assertThat(finder.findPath(6, 1, 10)).isNull();
+
+        graph.onFriendRemoved(7, 8);
+        assertThat(finder.findPath(1, 6, 10)).containsExactly(1, 2, 3, 4, 5, 6);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.cache.FriendSuggestionCache;
+import ru.yandex.practicum.filmorate.storage.cache.FriendSuggestionProperties;
+import ru.yandex.practicum.filmorate.storage.index.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendSuggestionEngineTests {
+
+    @Test
+    public void shouldRankFriendsOfFriendsByWeightedScore() {
+        FriendshipGraph graph = getGraph();
+        FriendSuggestionEngine engine = new FriendSuggestionEngine(graph);
+
+        // 5: 2*2 + 1*1 = 5, 4: 2*1 = 2, 6: 1*1 = 1; 3 уже друг
+        assertThat(engine.suggest(1, 10)).containsExactly(5, 4, 6);
+        assertThat(engine.suggest(1, 2)).containsExactly(5, 4);
+        assertThat(engine.suggest(7, 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldServePrecomputedSuggestionsWithoutNewFriends() {
+        FriendshipGraph graph = getGraph();
+        FriendSuggestionProperties properties = new FriendSuggestionProperties();
+        properties.setPrecomputeEnabled(true);
+        properties.setPrecomputedCount(3);
+        FriendSuggestionCache cache = new FriendSuggestionCache(properties, new FriendSuggestionEngine(graph), graph);
+
+        assertThat(cache.get(1, 2)).isNull();
+        cache.refresh();
+        assertThat(cache.get(1, 2)).containsExactly(5, 4);
+
+        graph.onFriendshipChanged(1, 5, false);
+        assertThat(cache.get(1, 2)).containsExactly(4, 6);
+        // снимок обрезан, недостающих кандидатов нужно искать заново
+        assertThat(cache.get(1, 3)).isNull();
+        assertThat(cache.get(1, 4)).isNull();
+    }
+
+    private FriendshipGraph getGraph() {
+        FriendshipGraph graph = new FriendshipGraph(null);
+        for (int userId = 1; userId <= 7; userId++) {
+            graph.onUserCreated(userId);
+        }
+        graph.onFriendshipChanged(1, 2, true);
+        graph.onFriendshipChanged(1, 3, false);
+        graph.onFriendshipChanged(2, 5, true);
+        graph.onFriendshipChanged(2, 4, false);
+        graph.onFriendshipChanged(2, 1, true);
+        graph.onFriendshipChanged(3, 5, false);
+        graph.onFriendshipChanged(3, 6, false);
+        graph.onFriendshipChanged(3, 1, false);
+        return graph;
+    }
+}
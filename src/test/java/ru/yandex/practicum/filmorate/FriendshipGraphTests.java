@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendshipGraphTests {
+
+    @Test
+    public void shouldTrackFriendshipsAndStatuses() {
+        FriendshipGraph graph = new FriendshipGraph(null);
+        for (int userId = 1; userId <= 4; userId++) {
+            graph.onUserCreated(userId);
+        }
+        graph.onFriendshipChanged(1, 3, false);
+        graph.onFriendshipChanged(1, 2, false);
+        graph.onFriendshipChanged(2, 1, true);
+        graph.onFriendshipChanged(1, 2, true);
+
+        assertThat(graph.containsUser(4)).isTrue();
+        assertThat(graph.containsUser(5)).isFalse();
+        assertThat(graph.hasFriend(1, 2)).isTrue();
+        assertThat(graph.hasFriend(3, 1)).isFalse();
+        assertThat(graph.getFriendIds(1)).containsExactly(2, 3);
+        assertThat(graph.getFollowers(1)).containsExactly(2);
+        int[] adjacency = graph.getAdjacency(1);
+        assertThat(FriendshipGraph.isConfirmed(adjacency[0])).isTrue();
+        assertThat(FriendshipGraph.isConfirmed(adjacency[1])).isFalse();
+
+        graph.onFriendRemoved(1, 3);
+        assertThat(graph.getFriendIds(1)).containsExactly(2);
+        assertThat(graph.getFollowers(3)).isEmpty();
+    }
+
+    @Test
+    public void shouldFindCommonFriendsAndDropDeletedUser() {
+        FriendshipGraph graph = new FriendshipGraph(null);
+        graph.onUserCreated(1);
+        graph.onUserCreated(2);
+        graph.onUserCreated(3);
+        graph.onUserCreated(100);
+        graph.onFriendshipChanged(1, 3, false);
+        graph.onFriendshipChanged(1, 100, false);
+        graph.onFriendshipChanged(2, 100, true);
+        graph.onFriendshipChanged(2, 3, false);
+        graph.onFriendshipChanged(100, 1, false);
+
+        assertThat(graph.getCommonFriends(1, 2)).containsExactly(3, 100);
+
+        graph.onUserDeleted(100);
+        assertThat(graph.containsUser(100)).isFalse();
+        assertThat(graph.getCommonFriends(1, 2)).containsExactly(3);
+        assertThat(graph.getFollowers(1)).isEmpty();
+        assertThat(graph.getAdjacency(100)).isEmpty();
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.index.GenreYearPopularityIndex;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GenreYearPopularityIndexTests {
+
+    @Test
+    public void getTopBySlices() {
+        GenreYearPopularityIndex index = new GenreYearPopularityIndex(null, null);
+        index.onFilmCreated(film(1, 2000, 1, 2));
+        index.onFilmCreated(film(2, 2000, 2));
+        index.onFilmCreated(film(3, 2010, 1));
+        index.onLikeAdded(2, 1);
+        index.onLikeAdded(3, 1);
+        index.onLikeAdded(3, 2);
+
+        assertThat(index.getTop(10, 2, 2000)).containsExactly(2, 1);
+        assertThat(index.getTop(10, 1, null)).containsExactly(3, 1);
+        assertThat(index.getTop(10, null, 2000)).containsExactly(2, 1);
+        assertThat(index.getTop(1, 1, null)).containsExactly(3);
+        assertThat(index.getTop(10, 3, 2000)).isEmpty();
+    }
+
+    @Test
+    public void filmMovesBetweenSlicesOnUpdate() {
+        GenreYearPopularityIndex index = new GenreYearPopularityIndex(null, null);
+        index.onFilmCreated(film(1, 2000, 1));
+        index.onFilmCreated(film(2, 2000, 1));
+        index.onLikeAdded(1, 1);
+
+        index.onFilmUpdated(film(1, 2005, 2));
+        assertThat(index.getTop(10, 1, 2000)).containsExactly(2);
+        assertThat(index.getTop(10, 2, 2005)).containsExactly(1);
+
+        index.onLikeRemoved(1, 1);
+        index.onLikeAdded(2, 1);
+        index.onFilmDeleted(1);
+        assertThat(index.getTop(10, null, 2005)).isEmpty();
+        assertThat(index.getTop(10, 1, null)).containsExactly(2);
+    }
+
+    private static Film film(int id, int year, Integer... genreIds) {
+        Film film = new Film();
+        film.setId(id);
+        film.setReleaseDate(LocalDate.of(year, 1, 1));
+        film.setGenres(Arrays.stream(genreIds).map(genreId -> new Genre(genreId, null)).collect(Collectors.toSet()));
+        return film;
+    }
+}
@@ -7,6 +7,12 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.buffer.FeedPipelineProperties;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBehindProperties;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCacheProperties;
+import ru.yandex.practicum.filmorate.storage.database.FeedEventPipeline;
 import ru.yandex.practicum.filmorate.storage.database.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.database.mapper.DirectorRowMapper;
 import ru.yandex.practicum.filmorate.storage.database.mapper.FilmRowMapper;
@@ -23,6 +29,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @Import({
         FilmDbStorage.class,
+        FilmCache.class, FilmCacheProperties.class, LikeWriteBuffer.class, LikeWriteBehindProperties.class, FeedEventPipeline.class, FeedPipelineProperties.class,
         FilmRowMapper.class,
         MpaRowMapper.class,
         GenreRowMapper.class,
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.RankedFilms;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RankedFilmsTests {
+
+    @Test
+    public void shouldOrderByScoreDescAndIdAsc() {
+        RankedFilms ranking = new RankedFilms();
+        ranking.set(3, 5);
+        ranking.set(1, 2);
+        ranking.set(2, 5);
+        ranking.set(4, 0);
+
+        assertThat(ranking.getTop(10)).containsExactly(2, 3, 1, 4);
+        assertThat(ranking.getTop(2)).containsExactly(2, 3);
+    }
+
+    @Test
+    public void shouldMoveFilmWhenScoreChanges() {
+        RankedFilms ranking = new RankedFilms();
+        ranking.set(1, 1);
+        ranking.set(2, 2);
+
+        ranking.add(1, 2);
+        assertThat(ranking.getTop(2)).containsExactly(1, 2);
+        assertThat(ranking.getScore(1)).isEqualTo(3);
+
+        ranking.add(1, -3);
+        assertThat(ranking.getTop(2)).containsExactly(2, 1);
+        assertThat(ranking.getScore(1)).isZero();
+
+        ranking.remove(2);
+        assertThat(ranking.getTop(2)).containsExactly(1);
+        assertThat(ranking.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.index.RecommendationEngine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecommendationEngineTests {
+
+    @Test
+    public void shouldRankFilmsOfClosestNeighbours() {
+        LikeMatrix likeMatrix = new LikeMatrix(null);
+        RecommendationEngine engine = new RecommendationEngine(likeMatrix);
+        likeMatrix.onLikeAdded(1, 1);
+        likeMatrix.onLikeAdded(2, 1);
+        // пользователь 2 совпадает по двум фильмам, пользователь 3 - по одному
+        likeMatrix.onLikeAdded(1, 2);
+        likeMatrix.onLikeAdded(2, 2);
+        likeMatrix.onLikeAdded(3, 2);
+        likeMatrix.onLikeAdded(1, 3);
+        likeMatrix.onLikeAdded(4, 3);
+        likeMatrix.onLikeAdded(3, 3);
+        // пользователь 4 без пересечений
+        likeMatrix.onLikeAdded(5, 4);
+
+        assertThat(engine.recommend(1)).containsExactly(3, 4);
+        assertThat(engine.recommend(4)).isEmpty();
+        assertThat(engine.recommend(5)).isEmpty();
+    }
+
+    @Test
+    public void shouldFollowLikeChanges() {
+        LikeMatrix likeMatrix = new LikeMatrix(null);
+        RecommendationEngine engine = new RecommendationEngine(likeMatrix);
+        likeMatrix.onLikeAdded(1, 1);
+        likeMatrix.onLikeAdded(1, 2);
+        likeMatrix.onLikeAdded(2, 2);
+        assertThat(engine.recommend(1)).containsExactly(2);
+
+        likeMatrix.onLikeAdded(2, 1);
+        assertThat(engine.recommend(1)).isEmpty();
+
+        likeMatrix.onLikeRemoved(2, 1);
+        likeMatrix.onFilmDeleted(2);
+        assertThat(engine.recommend(1)).isEmpty();
+        assertThat(likeMatrix.getUserFilms(2)).containsExactly(1);
+    }
+}
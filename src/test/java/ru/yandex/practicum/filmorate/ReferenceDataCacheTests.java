@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.buffer.FeedPipelineProperties;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBehindProperties;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCacheProperties;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.database.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.database.FeedEventPipeline;
+import ru.yandex.practicum.filmorate.storage.database.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.database.mapper.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.storage.database.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.database.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.database.mapper.MpaRowMapper;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({ReferenceDataCache.class, FilmDbStorage.class, FilmCache.class, FilmCacheProperties.class, LikeWriteBuffer.class, LikeWriteBehindProperties.class, FeedEventPipeline.class, FeedPipelineProperties.class, FilmRowMapper.class,
+        GenreRowMapper.class, MpaRowMapper.class, DirectorDbStorage.class, DirectorRowMapper.class})
+class ReferenceDataCacheTests {
+    private final ReferenceDataCache referenceDataCache;
+    private final DirectorDbStorage directorDbStorage;
+
+    @Test
+    public void shouldServeReferencesFromSnapshot() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        referenceDataCache.bindTo(registry);
+
+        assertThat(referenceDataCache.getAllGenres()).hasSize(6);
+        assertThat(referenceDataCache.getGenresByIds(List.of(2, 1, 100))).extracting("id").containsExactly(2, 1);
+        assertThat(referenceDataCache.getRatingById(1).getName()).isEqualTo("G");
+        assertThat(referenceDataCache.getRatingById(100)).isNull();
+
+        assertThat(registry.get("filmorate.reference.cache.requests").tags("cache", "genres", "result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("filmorate.reference.cache.requests").tags("cache", "genres", "result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReloadDirectorsAfterInvalidation() {
+        assertThat(referenceDataCache.getAllDirectors()).isEmpty();
+
+        Director director = directorDbStorage.createDirector(new Director(null, "Director"));
+        assertThat(referenceDataCache.getDirectorById(director.getId())).isEmpty();
+
+        referenceDataCache.onDirectorCreated(director);
+        assertThat(referenceDataCache.getDirectorById(director.getId())).contains(director);
+    }
+}
@@ -8,6 +8,12 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.buffer.FeedPipelineProperties;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBehindProperties;
+import ru.yandex.practicum.filmorate.storage.buffer.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCacheProperties;
+import ru.yandex.practicum.filmorate.storage.database.FeedEventPipeline;
 import ru.yandex.practicum.filmorate.storage.database.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.database.ReviewDbStorage;
 import ru.yandex.practicum.filmorate.storage.database.UserDbStorage;
@@ -25,7 +31,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @Import({UserDbStorage.class, UserRowMapper.class, ReviewDbStorage.class, ReviewRowMapper.class,
-        FilmDbStorage.class, FilmRowMapper.class, GenreRowMapper.class, MpaRowMapper.class, DirectorRowMapper.class,})
+        FilmDbStorage.class, FilmCache.class, FilmCacheProperties.class, LikeWriteBuffer.class, LikeWriteBehindProperties.class, FeedEventPipeline.class, FeedPipelineProperties.class, FilmRowMapper.class, GenreRowMapper.class, MpaRowMapper.class, DirectorRowMapper.class,})
 public class ReviewsTests {
     private final UserDbStorage userDbStorage;
     private final ReviewDbStorage reviewDbStorage;
@@ -69,7 +75,7 @@ public class ReviewsTests {
         reviewDbStorage.createReview(review1);
         reviewDbStorage.createReview(review2);
 
-        List<Review> reviews = reviewDbStorage.getAllReviews(10);
+        List<Review> reviews = reviewDbStorage.getAllReviews(10, true);
 
         //должны быть добавлены все отзывы
         assertThat(reviews).contains(review0, review1, review2);
@@ -79,11 +85,57 @@ public class ReviewsTests {
         assertThat(reviews.getLast()).isEqualTo(review0);
 
         //получение отзывов по фильму
-        List<Review> reviewsByFilm = reviewDbStorage.getReviewsByFilm(film0.getId(), 10);
+        List<Review> reviewsByFilm = reviewDbStorage.getReviewsByFilm(film0.getId(), 10, true);
         assertThat(reviewsByFilm).hasSize(2)
                 .contains(review0, review1);
     }
 
+    @Test
+    public void reviewPages() {
+        User user1 = userDbStorage.createUser(getUser());
+        Film film1 = filmDbStorage.createFilm(getFilm());
+
+        Review review1 = new Review(null, "review1", false, user1.getId(), film0.getId(), 10);
+        Review review2 = new Review(null, "review2", true, user1.getId(), film1.getId(), 10);
+        Review review3 = new Review(null, "review3", true, user1.getId(), film0.getId(), -5);
+
+        reviewDbStorage.createReview(review0);
+        reviewDbStorage.createReview(review1);
+        reviewDbStorage.createReview(review2);
+        reviewDbStorage.createReview(review3);
+
+        //первая страница начинается до всех отзывов, при равной полезности отзывы идут по id
+        List<Review> page = reviewDbStorage.getReviewsPage(null, Integer.MAX_VALUE, 0, 2, true);
+        assertThat(page).containsExactly(review1, review2);
+
+        Review last = page.getLast();
+        page = reviewDbStorage.getReviewsPage(null, last.getUseful(), last.getId(), 2, true);
+        assertThat(page).containsExactly(review0, review3);
+
+        //страницы отзывов фильма
+        page = reviewDbStorage.getReviewsPage(film0.getId(), 10, review1.getId(), 10, true);
+        assertThat(page).containsExactly(review0, review3);
+    }
+
+    @Test
+    public void reviewContentStorage() {
+        String longContent = "Очень подробный отзыв. ".repeat(400);
+        Review longReview = new Review(null, longContent, true, user0.getId(), film0.getId(), 0);
+        reviewDbStorage.createReview(longReview);
+        reviewDbStorage.createReview(review0);
+
+        //длинный текст хранится сжатым и читается без изменений
+        assertThat(ReviewContentCodec.encode(longContent).length).isLessThan(longContent.length());
+        assertThat(reviewDbStorage.getReviewById(longReview.getId()).map(Review::getContent)).contains(longContent);
+        assertThat(reviewDbStorage.getReviewContent(review0.getId())).contains(review0.getContent());
+
+        //краткий список отзывов не содержит текста
+        List<Review> summaries = reviewDbStorage.getReviewsByFilm(film0.getId(), 10, false);
+        assertThat(summaries).hasSize(2);
+        assertThat(summaries).extracting(Review::getContent).containsOnlyNulls();
+        assertThat(reviewDbStorage.getReviewContent(longReview.getId() + 100)).isEmpty();
+    }
+
     @Test
     public void getReviewById() {
         reviewDbStorage.createReview(review0);
@@ -124,7 +176,8 @@ public class ReviewsTests {
         reviewDbStorage.createReview(review0);
 
         //добавляем реакцию
-        reviewDbStorage.addReviewReaction(review0.getId(), user1.getId(), true, 1);
+        Optional<Review> reviewWithReaction = reviewDbStorage.addReviewReaction(review0.getId(), user1.getId(), true);
+        assertThat(reviewWithReaction.map(Review::getUseful)).contains(1);
         //получаем реакцию пользователя на отзыв
         Optional<ReviewReaction> reaction = reviewDbStorage.getReviewReaction(review0.getId(), user1.getId());
         assertThat(reaction.isPresent()).isTrue(); //проверяем что есть
@@ -135,7 +188,7 @@ public class ReviewsTests {
 
 
         //удаляем реакцию
-        reviewDbStorage.deleteReviewReaction(review0.getId(), user1.getId(), 0);
+        reviewDbStorage.deleteReviewReaction(review0.getId(), user1.getId(), true);
         //получаем реакцию пользователя на отзыв
         reaction = reviewDbStorage.getReviewReaction(review0.getId(), user1.getId());
         assertThat(reaction.isPresent()).isFalse(); //проверяем что реакции нет
@@ -144,6 +197,29 @@ public class ReviewsTests {
 
     }
 
+    @Test
+    public void reviewReactionFlips() {
+        User user1 = userDbStorage.createUser(getUser());
+        User user2 = userDbStorage.createUser(getUser());
+        reviewDbStorage.createReview(review0);
+        int reviewId = review0.getId();
+
+        assertThat(reviewDbStorage.addReviewReaction(reviewId, user1.getId(), true).map(Review::getUseful)).contains(1);
+        assertThat(reviewDbStorage.addReviewReaction(reviewId, user2.getId(), true).map(Review::getUseful)).contains(2);
+        //повторная реакция ничего не меняет
+        assertThat(reviewDbStorage.addReviewReaction(reviewId, user1.getId(), true)).isEmpty();
+        //смена лайка на дизлайк сдвигает полезность на 2
+        assertThat(reviewDbStorage.addReviewReaction(reviewId, user1.getId(), false).map(Review::getUseful)).contains(0);
+        assertThat(reviewDbStorage.getReviewReaction(reviewId, user1.getId()).map(ReviewReaction::isPositive))
+                .contains(false);
+        //удаление реакции другого знака ничего не меняет
+        assertThat(reviewDbStorage.deleteReviewReaction(reviewId, user1.getId(), true)).isEmpty();
+        assertThat(reviewDbStorage.deleteReviewReaction(reviewId, user1.getId(), false).map(Review::getUseful))
+                .contains(1);
+        //реакция на несуществующий отзыв не добавляется
+        assertThat(reviewDbStorage.addReviewReaction(reviewId + 100, user1.getId(), true)).isEmpty();
+    }
+
     private User getUser() {
         User user = new User();
         user.setEmail("ex@ex.ru");
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.TextIndex;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextIndexTests {
+
+    @Test
+    public void shouldFindSubstringIgnoringCase() {
+        TextIndex index = new TextIndex();
+        index.put(1, "Крестный отец");
+        index.put(2, "The Godfather");
+        index.put(3, "Отец невесты");
+
+        assertThat(index.find("ОТЕЦ")).containsExactlyInAnyOrder(1, 3);
+        assertThat(index.find("godf")).containsExactly(2);
+        assertThat(index.find("ый от")).containsExactly(1);
+        assertThat(index.find("e")).containsExactly(2);
+        assertThat(index.find("отец крестный")).isEmpty();
+        assertThat(index.find(" ")).containsExactlyInAnyOrder(1, 2, 3);
+    }
+
+    @Test
+    public void shouldReindexOnPutAndRemove() {
+        TextIndex index = new TextIndex();
+        index.put(1, "Интерстеллар");
+
+        index.put(1, "Начало");
+        assertThat(index.find("стел")).isEmpty();
+        assertThat(index.find("нач")).containsExactly(1);
+
+        index.remove(1);
+        assertThat(index.find("нач")).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+}
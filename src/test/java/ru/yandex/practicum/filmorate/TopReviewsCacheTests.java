@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.cache.TopReviewsCache;
+import ru.yandex.practicum.filmorate.storage.cache.TopReviewsCacheProperties;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopReviewsCacheTests {
+
+    @Test
+    public void shouldKeepRankingOnReviewChanges() {
+        TopReviewsCache cache = new TopReviewsCache(new TopReviewsCacheProperties());
+        assertThat(cache.getTop(1, 10)).isNull();
+
+        cache.put(1, List.of(getReview(3, 5), getReview(1, 2), getReview(2, 2)), true, cache.stamp(1));
+        assertThat(cache.getTop(1, 10)).containsExactly(3, 1, 2);
+
+        cache.onReviewCreated(getReview(4, 0));
+        cache.onUsefulChanged(1, 2, 6, cache.reviewStamp(2));
+        assertThat(cache.getTop(1, 10)).containsExactly(2, 3, 1, 4);
+
+        cache.onReviewDeleted(1, 3);
+        cache.onUsefulChanged(1, 4, 2, cache.reviewStamp(4));
+        assertThat(cache.getTop(1, 2)).containsExactly(2, 1);
+        assertThat(cache.getTop(1, 10)).containsExactly(2, 1, 4);
+
+        cache.onFilmDeleted(1);
+        assertThat(cache.getTop(1, 10)).isNull();
+    }
+
+    @Test
+    public void shouldNotGuessReviewsBeyondDepth() {
+        TopReviewsCacheProperties properties = new TopReviewsCacheProperties();
+        properties.setDepth(2);
+        TopReviewsCache cache = new TopReviewsCache(properties);
+        cache.put(1, List.of(getReview(1, 9), getReview(2, 7), getReview(3, 5)), false, cache.stamp(1));
+        assertThat(cache.getTop(1, 2)).containsExactly(1, 2);
+        assertThat(cache.getTop(1, 3)).isNull();
+
+        // отзыв ушел вниз, а новый отзыв, не обогнавший последний хранимый, в хранимую часть не попадает
+        cache.onUsefulChanged(1, 2, 1, cache.reviewStamp(2));
+        cache.onReviewCreated(getReview(4, 0));
+        assertThat(cache.getTop(1, 1)).containsExactly(1);
+        assertThat(cache.getTop(1, 2)).isNull();
+
+        // отзыв за пределами хранимой части обогнал последний хранимый
+        cache.onUsefulChanged(1, 3, 10, cache.reviewStamp(3));
+        assertThat(cache.getTop(1, 2)).containsExactly(3, 1);
+    }
+
+    @Test
+    public void shouldDiscardReviewsReadBeforeChange() {
+        TopReviewsCache cache = new TopReviewsCache(new TopReviewsCacheProperties());
+        long stamp = cache.stamp(1);
+        cache.onUsefulChanged(1, 2, 6, cache.reviewStamp(2));
+        cache.put(1, List.of(getReview(1, 2), getReview(2, 2)), true, stamp);
+        assertThat(cache.getTop(1, 10)).isNull();
+
+        cache.put(1, List.of(getReview(2, 6), getReview(1, 2)), true, cache.stamp(1));
+        assertThat(cache.getTop(1, 10)).containsExactly(2, 1);
+    }
+
+    @Test
+    public void shouldResetFilmOnConcurrentUsefulChanges() {
+        TopReviewsCache cache = new TopReviewsCache(new TopReviewsCacheProperties());
+        cache.put(1, List.of(getReview(1, 2), getReview(2, 1)), true, cache.stamp(1));
+
+        // обе реакции изменены до сообщений о них, более новое значение пришло первым
+        long firstStamp = cache.reviewStamp(2);
+        long secondStamp = cache.reviewStamp(2);
+        cache.onUsefulChanged(1, 2, 3, secondStamp);
+        assertThat(cache.getTop(1, 10)).containsExactly(2, 1);
+        cache.onUsefulChanged(1, 2, 2, firstStamp);
+        assertThat(cache.getTop(1, 10)).isNull();
+    }
+
+    private Review getReview(int reviewId, int useful) {
+        return new Review(reviewId, "content", true, 1, 1, useful);
+    }
+}
@@ -6,10 +6,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.user.FeedDto;
 import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.FriendshipStatus;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.TimelineService;
+import ru.yandex.practicum.filmorate.storage.buffer.FeedPipelineProperties;
+import ru.yandex.practicum.filmorate.storage.cache.RequestIdentityMap;
+import ru.yandex.practicum.filmorate.storage.cache.TimelineCache;
+import ru.yandex.practicum.filmorate.storage.cache.TimelineCacheProperties;
+import ru.yandex.practicum.filmorate.storage.database.FeedEventPipeline;
 import ru.yandex.practicum.filmorate.storage.database.UserDbStorage;
 import ru.yandex.practicum.filmorate.storage.database.mapper.UserRowMapper;
 
@@ -22,9 +32,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 @JdbcTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({UserDbStorage.class, UserRowMapper.class})
+@Import({UserDbStorage.class, UserRowMapper.class, FeedEventPipeline.class, FeedPipelineProperties.class,
+        TimelineCache.class, TimelineCacheProperties.class})
 public class UserIntegrationTests {
     private final UserDbStorage userDbStorage;
+    private final TimelineCache timelineCache;
 
     @Test
     public void createFilm() {
@@ -56,6 +68,21 @@ public class UserIntegrationTests {
         assertThat(checkUser.getBirthday()).isEqualTo(user.getBirthday());
     }
 
+    @Test
+    public void getUsersPage() {
+        User user1 = userDbStorage.createUser(getUser());
+        User user2 = userDbStorage.createUser(getUser());
+        User user3 = userDbStorage.createUser(getUser());
+        userDbStorage.addFriend(user2.getId(), user3.getId(), 2);
+
+        List<User> firstPage = userDbStorage.getUsersPage(0, 2);
+        assertThat(firstPage).extracting(User::getId).containsExactly(user1.getId(), user2.getId());
+        assertThat(firstPage.getLast().getFriendsIds()).containsExactly(user3.getId());
+
+        List<User> secondPage = userDbStorage.getUsersPage(user2.getId(), 2);
+        assertThat(secondPage).extracting(User::getId).containsExactly(user3.getId());
+    }
+
     @Test
     public void updateUser() {
         User oldUser = userDbStorage.createUser(getUser());
@@ -140,6 +167,95 @@ public class UserIntegrationTests {
         assertThat(feedDto.getEventType()).isEqualTo("FRIEND");
     }
 
+    @Test
+    public void userFeedPage() {
+        User user1 = userDbStorage.createUser(getUser());
+        User user2 = userDbStorage.createUser(getUser());
+        User user3 = userDbStorage.createUser(getUser());
+        userDbStorage.addFriend(user1.getId(), user2.getId(), 2);
+        userDbStorage.addFriend(user1.getId(), user3.getId(), 2);
+        userDbStorage.deleteFriend(user1.getId(), user2.getId());
+        userDbStorage.addFriend(user2.getId(), user1.getId(), 2);
+
+        List<FeedDto> feed = userDbStorage.getUserFeed(user1.getId());
+        assertThat(feed).hasSize(3);
+
+        List<FeedDto> page = userDbStorage.getUserFeedPage(user1.getId(), Integer.MAX_VALUE, 2);
+        assertThat(page).extracting(FeedDto::getEventId)
+                .containsExactly(feed.get(2).getEventId(), feed.get(1).getEventId());
+
+        page = userDbStorage.getUserFeedPage(user1.getId(), page.getLast().getEventId(), 2);
+        assertThat(page).extracting(FeedDto::getEventId).containsExactly(feed.getFirst().getEventId());
+    }
+
+    @Test
+    public void friendsTimeline() {
+        User user1 = userDbStorage.createUser(getUser());
+        User user2 = userDbStorage.createUser(getUser());
+        User user3 = userDbStorage.createUser(getUser());
+        User user4 = userDbStorage.createUser(getUser());
+        userDbStorage.addFriend(user1.getId(), user2.getId(), 2);
+        userDbStorage.addFriend(user1.getId(), user3.getId(), 2);
+        userDbStorage.addFriend(user2.getId(), user4.getId(), 2);
+        userDbStorage.addFriend(user3.getId(), user4.getId(), 2);
+        userDbStorage.addFriend(user4.getId(), user2.getId(), 2);
+        userDbStorage.deleteFriend(user2.getId(), user4.getId());
+
+        TimelineService timelineService = new TimelineService(userDbStorage, timelineCache,
+                new RequestIdentityMap(userDbStorage, null));
+        PageDto<FeedDto> page = timelineService.getTimeline(user1.getId(), null, 2);
+        assertThat(page.getItems()).extracting(FeedDto::getUserId).containsExactly(user2.getId(), user3.getId());
+        assertThat(page.getItems()).extracting(FeedDto::getOperation).containsExactly("REMOVE", "ADD");
+        assertThat(page.getNextCursor()).isNotNull();
+
+        page = timelineService.getTimeline(user1.getId(), Integer.valueOf(page.getNextCursor()), 2);
+        assertThat(page.getItems()).extracting(FeedDto::getUserId).containsExactly(user2.getId());
+        assertThat(page.getNextCursor()).isNull();
+
+        TimelineCacheProperties properties = new TimelineCacheProperties();
+        properties.setEnabled(true);
+        properties.setDepth(2);
+        TimelineCache cache = new TimelineCache(properties);
+        TimelineService cachedTimeline = new TimelineService(userDbStorage, cache,
+                new RequestIdentityMap(userDbStorage, null));
+        assertThat(cachedTimeline.getTimeline(user1.getId(), null, 1).getItems())
+                .extracting(FeedDto::getOperation).containsExactly("REMOVE");
+        assertThat(cache.getHits()).isEqualTo(1);
+        // собранной части ленты не хватает, лента пересобирается глубже
+        assertThat(cachedTimeline.getTimeline(user1.getId(), null, 10).getItems()).hasSize(3);
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(cachedTimeline.getTimeline(user1.getId(), null, 10).getItems()).hasSize(3);
+        assertThat(cache.getHits()).isEqualTo(3);
+        assertThat(cachedTimeline.getTimeline(user4.getId(), null, 10).getItems())
+                .extracting(FeedDto::getOperation).containsExactly("REMOVE", "ADD");
+    }
+
+    @Test
+    public void requestIdentityMap() {
+        User user = userDbStorage.createUser(getUser());
+        RequestIdentityMap identityMap = new RequestIdentityMap(userDbStorage, null);
+
+        //вне запроса каждое чтение идет в хранилище
+        assertThat(identityMap.getUser(user.getId())).isNotSameAs(identityMap.getUser(user.getId()));
+        assertThat(userDbStorage.existsUserById(user.getId())).isTrue();
+        assertThat(userDbStorage.existsUserById(user.getId() + 1)).isFalse();
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            //в пределах запроса пользователь читается один раз
+            User loaded = identityMap.getUser(user.getId());
+            assertThat(identityMap.getUser(user.getId())).isSameAs(loaded);
+            assertThat(identityMap.existsUser(user.getId())).isTrue();
+            assertThat(identityMap.getUser(user.getId() + 1)).isNull();
+            assertThat(identityMap.existsUser(user.getId() + 1)).isFalse();
+
+            identityMap.evictUser(user.getId());
+            assertThat(identityMap.getUser(user.getId())).isNotSameAs(loaded);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
     private User getUser() {
         User user = new User();
         user.setEmail("ex@ex.ru");